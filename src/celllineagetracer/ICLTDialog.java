@@ -55,9 +55,11 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
 
 import additionaluserinterface.GridPanel;
 import additionaluserinterface.Settings;
+import additionaluserinterface.WalkBar;
 import celllineagetracer.canvas.DisplayControlPanel;
 import celllineagetracer.cell.CellsPanel;
 import celllineagetracer.outline.OutlinesPanel;
@@ -73,6 +75,7 @@ public class ICLTDialog extends JDialog implements ActionListener {
 	private JButton bnOpen = new JButton("Open...");
 	private JButton bnSave = new JButton("Save...");
 	private JTextField txtFile;
+	private WalkBar walk = new WalkBar("", false, false, false);
 	private JTabbedPane tab = new JTabbedPane();
 	private StackWindow windowOriginal;
 	private Supervisor supervisor;
@@ -95,6 +98,7 @@ public class ICLTDialog extends JDialog implements ActionListener {
 		pnFile.place(2, 1, this.bnOpen);
 		pnFile.place(2, 2, this.bnSave);
 		pnFile.place(2, 3, this.bnClose);
+		pnFile.place(3, 0, 4, 1, this.walk);
 
 		OutlinesPanel panelOutlines = new OutlinesPanel(supervisor);
 		panelOutlines.setBorder(BorderFactory.createEtchedBorder());
@@ -155,6 +159,7 @@ public class ICLTDialog extends JDialog implements ActionListener {
 	public synchronized void actionPerformed(ActionEvent e) {
 		if (e.getSource() == this.bnClose) {
 			if (checkSave()) {
+				ICLTFile.detach();
 				this.settings.storeRecordedItems();
 				dispose();
 				if (this.windowOriginal != null) {
@@ -171,8 +176,7 @@ public class ICLTDialog extends JDialog implements ActionListener {
 			if (checkSave()) {
 				String path = ICLTFile.browseOpen(this.txtFile.getText());
 				if (path != null) {
-					ICLTFile.load(path);
-					this.txtFile.setText(path);
+					open(path);
 				}
 			}
 		}
@@ -180,11 +184,38 @@ public class ICLTDialog extends JDialog implements ActionListener {
 			String path = ICLTFile.browseSave(this.txtFile.getText());
 			if (path != null) {
 				this.txtFile.setText(path);
-				ICLTFile.save(this.txtFile.getText());
+				ICLTFile.commit(this.txtFile.getText());
 			}
 		}
 	}
 
+	// The file is parsed in a thread, the project is replaced in the event
+	// dispatch thread once the whole file is read; a file read in part is
+	// reported by ICLTFile.read() and the current project is kept
+	private void open(final String path) {
+		this.bnOpen.setEnabled(false);
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				final ProjectContent content = ICLTFile.read(path, ICLTDialog.this.walk);
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						ICLTDialog.this.bnOpen.setEnabled(true);
+						if (!content.isComplete()) {
+							return;
+						}
+						content.install();
+						ICLTFile.open(path, content);
+						ICLTDialog.this.txtFile.setText(path);
+						ICLTDialog.this.supervisor.fireChanged(ModelListener.ALL);
+						ICLTDialog.this.supervisor.select(null);
+					}
+				});
+			}
+		});
+		thread.setPriority(1);
+		thread.start();
+	}
+
 	public boolean checkSave() {
 		if (Supervisor.cells == null) {
 			return true;
@@ -200,7 +231,10 @@ public class ICLTDialog extends JDialog implements ActionListener {
 			return false;
 		}
 		if (reply == 0) {
-			ICLTFile.save(this.txtFile.getText());
+			ICLTFile.commit(this.txtFile.getText());
+		}
+		if (reply == 1) {
+			ICLTFile.discard();
 		}
 		return true;
 	}
@@ -223,9 +257,7 @@ public class ICLTDialog extends JDialog implements ActionListener {
 						List<File> files = (List) transferable.getTransferData(flavor);
 						for (File file : files) {
 							if (file.isFile()) {
-								ICLTFile.load(file.getAbsolutePath());
-								ICLTDialog.this.txtFile.setText(file.getAbsolutePath());
-								ICLTDialog.this.supervisor.updateAll(null, true);
+								open(file.getAbsolutePath());
 							}
 						}
 					}
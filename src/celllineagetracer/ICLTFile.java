@@ -34,126 +34,312 @@
 
 package celllineagetracer;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.StringTokenizer;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import javax.swing.JFileChooser;
 
+import additionaluserinterface.WalkBar;
 import celllineagetracer.cell.Cell;
 import celllineagetracer.cell.Cells;
+import celllineagetracer.cell.Lineage;
+import celllineagetracer.outline.Interpolation;
 import celllineagetracer.outline.Outline;
 import celllineagetracer.pixelclass.PixelClass;
 import celllineagetracer.pixelclass.PixelClasses;
-import celllineagetracer.polyline.Node;
 import celllineagetracer.polyline.Polyline;
 import ij.IJ;
 
 public class ICLTFile {
+	// Precision of the coordinates, 1/1000 pixel as in the binary format
+	public static final int DECIMALS = 3;
+	public static final String INTERPOLATE = "INTERPOLATE";
+
+	// Writes the whole project, the journal of the file restarts empty
 	public static void save(String filename) {
+		if (write(filename)) {
+			attach(filename, true);
+		}
+	}
+
+	// Saving into the project of the current journal only commits the
+	// journal, the project file is rewritten when the journal is compacted
+	public static void commit(String filename) {
+		Journal journal = Supervisor.journal;
+		if ((journal != null) && journal.isJournalOf(filename)) {
+			journal.commit();
+		}
+		else {
+			save(filename);
+		}
+	}
+
+	// Drops the edits recorded since the last commit
+	public static void discard() {
+		if (Supervisor.journal != null) {
+			Supervisor.journal.discard();
+			Supervisor.journal = null;
+		}
+	}
+
+	public static void detach() {
+		if (Supervisor.journal != null) {
+			Supervisor.journal.close();
+			Supervisor.journal = null;
+		}
+	}
+
+	private static void attach(String filename, boolean reset) {
+		detach();
+		if (reset) {
+			Journal.getFile(filename).delete();
+		}
+		try {
+			Supervisor.journal = new Journal(filename);
+		}
+		catch (IOException ex) {
+			IJ.error("Unable to open the journal of " + filename);
+		}
+	}
+
+	// The project is written in a temporary file moved over the previous
+	// one, which may still be mapped by the outlines not yet decoded
+	private static boolean write(String filename) {
+		File tmp = new File(filename + ".tmp");
+		try {
+			if (ProjectBinary.isBinary(filename)) {
+				ProjectBinary.write(tmp.getPath());
+			}
+			else {
+				writeText(tmp.getPath());
+			}
+			replace(tmp, new File(filename).getAbsoluteFile());
+			return true;
+		}
+		catch (IOException ex) {
+			IJ.error("Unable to save the cells into " + filename);
+			return false;
+		}
+	}
+
+	// Windows does not replace a mapped file: the outlines still reading it
+	// are decoded for good, then the move is tried again once the garbage
+	// collector has released the mappings
+	private static void replace(File tmp, File file) throws IOException {
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			return;
+		}
+		catch (IOException ex) {
+			if (!release(file)) {
+				throw ex;
+			}
+		}
+		for (int attempt = 1;; attempt++) {
+			System.gc();
+			try {
+				Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				return;
+			}
+			catch (IOException ex) {
+				if (attempt == 3) {
+					throw ex;
+				}
+				try {
+					Thread.sleep(100 * attempt);
+				}
+				catch (InterruptedException ie) {
+					throw ex;
+				}
+			}
+		}
+	}
+
+	// True if some outlines were still reading the file
+	private static boolean release(File file) {
+		boolean released = false;
+		for (Cell cell : Supervisor.cells.values()) {
+			for (Integer frame : cell.getListOutlinesFrame()) {
+				released |= cell.getKeyframe(frame).release(file);
+			}
+		}
+		return released;
+	}
+
+	private static void writeText(String filename) throws IOException {
+		Cells cells = Supervisor.cells;
+		PixelClasses classes = Supervisor.classes;
+		BufferedWriter buffer = new BufferedWriter(new FileWriter(filename), 1 << 16);
 		try {
-			Cells cells = Supervisor.cells;
-			PixelClasses classes = Supervisor.classes;
-			BufferedWriter buffer = new BufferedWriter(new FileWriter(filename));
+			// The rows are formatted in one builder and copied to the writer
+			// through one buffer, both reused for all the rows
+			StringBuilder sb = new StringBuilder(1 << 12);
+			char[] chars = new char[1 << 12];
+			if (Supervisor.lineage != null) {
+				chars = write(buffer, appendLineage(sb, Supervisor.lineage), chars);
+			}
 			for (String name : cells.keySet()) {
-				Cell cell = (Cell) cells.get(name);
-				String row = "CELL, " + name + ", " + cell.getDefaultClass() + ", " + cell.getHue() + ", "
-						+ cell.isMobile() + ", " + cell.isMultiplePart();
-				buffer.write(row + "\n");
+				chars = write(buffer, appendCell(sb, name, (Cell) cells.get(name)), chars);
 			}
 			for (String name : classes.keySet()) {
-				PixelClass klass = (PixelClass) classes.get(name);
-				String row = "CLASS, " + name + ", " + klass.hue + ", ";
-				row = row + klass.valueRegion + ", ";
-				row = row + klass.sizeInner + ", " + klass.valueInner + ", ";
-				row = row + klass.sizeOuter + ", " + klass.valueOuter + ", ";
-				buffer.write(row + "\n");
+				chars = write(buffer, appendClass(sb, name, (PixelClass) classes.get(name)), chars);
+			}
+			for (String name : cells.keySet()) {
+				Cell cell = (Cell) cells.get(name);
+				for (Integer frame : cell.getListOutlinesFrame()) {
+					chars = write(buffer, appendOutline(sb, cell.getKeyframe(frame)), chars);
+				}
 			}
-			Iterator<Integer> localIterator2;
-
 			for (String name : cells.keySet()) {
 				Cell cell = (Cell) cells.get(name);
-				localIterator2 = cell.getListOutlinesFrame().iterator();
-				Integer frame = (Integer) localIterator2.next();
-				Outline outline = cell.getOutline(frame);
-				String row = "OUTLINE, " + outline.cell + ", " + outline.klass + "," + Tools.frame(frame.intValue())
-						+ ", ";
-				Polyline p = outline.getPolyline();
-				row = row + p.size() + ",";
-				for (Node node : p) {
-					row = row + node.x + "," + node.y + ",";
+				for (Interpolation interpolation : cell.getInterpolations()) {
+					chars = write(buffer, appendInterpolation(sb, name, interpolation), chars);
 				}
-				buffer.write(row + "\n");
 			}
+		}
+		finally {
 			buffer.close();
 		}
-		catch (IOException ex) {
-			IJ.error("Unable to save the cells into " + filename);
+	}
+
+	private static char[] write(Writer buffer, StringBuilder sb, char[] chars) throws IOException {
+		if (sb.length() > chars.length) {
+			chars = new char[sb.capacity()];
 		}
+		sb.getChars(0, sb.length(), chars, 0);
+		buffer.write(chars, 0, sb.length());
+		return chars;
 	}
 
-	public static void load(String filename) {
-		Supervisor.clear();
+	// The rows of the text format, shared with the journal
+	public static StringBuilder appendCell(StringBuilder sb, String name, Cell cell) {
+		sb.setLength(0);
+		sb.append("CELL, ").append(name).append(", ").append(cell.getDefaultClass()).append(", ");
+		sb.append(cell.getHue()).append(", ").append(cell.isMobile()).append(", ").append(cell.isMultiplePart());
+		return sb.append('\n');
+	}
 
-		String line = "-";
-		try {
-			BufferedReader buffer = new BufferedReader(new FileReader(filename));
-			line = buffer.readLine();
-			while (line != null) {
-				StringTokenizer tokens = new StringTokenizer(line, ",");
-				String type = tokens.nextToken().trim();
-				if (type.equals("CLASS")) {
-					int count = tokens.countTokens();
-					String name = count > 0 ? tokens.nextToken().trim() : "noname";
-					int hue = count > 1 ? Tools.convertToInt(tokens.nextToken(), 0) : 0;
-					int valueRegion = count > 1 ? Tools.convertToInt(tokens.nextToken(), 0) : 0;
-					int sizeInner = count > 3 ? Tools.convertToInt(tokens.nextToken(), 0) : 0;
-					int valueInner = count > 4 ? Tools.convertToInt(tokens.nextToken(), 0) : 0;
-					int sizeOuter = count > 5 ? Tools.convertToInt(tokens.nextToken(), 0) : 0;
-					int valueOuter = count > 6 ? Tools.convertToInt(tokens.nextToken(), 0) : 0;
-					PixelClass klass = new PixelClass(hue, valueRegion);
-					klass.setInnerContour(sizeInner, valueInner);
-					klass.setOuterContour(sizeOuter, valueOuter);
-					Supervisor.classes.put(name, klass);
-				}
-				if (type.equals("CELL")) {
-					int count = tokens.countTokens();
-					String name = count > 0 ? tokens.nextToken().trim() : "noname";
-					String klass = count > 1 ? tokens.nextToken().trim() : "";
-					int hue = count > 1 ? Tools.convertToInt(tokens.nextToken(), 0) : 0;
-					boolean mo = count > 1 ? tokens.nextToken().trim().equals("true") : true;
-					boolean mp = count > 1 ? tokens.nextToken().trim().equals("true") : true;
-					Cell cell = new Cell(klass, hue, mo, mp);
-					Supervisor.cells.put(name, cell);
-				}
-				if (type.equals("OUTLINE")) {
-					int count = tokens.countTokens();
-					String name = count > 0 ? tokens.nextToken().trim() : "noname";
-					String klass = count > 1 ? tokens.nextToken().trim() : "";
-					int frame = count > 2 ? Tools.convertToInt(tokens.nextToken(), 0) : 0;
-					Cell cell = (Cell) Supervisor.cells.get(name);
-					if (cell != null) {
-						int npoints = Tools.convertToInt(tokens.nextToken(), 0);
-						Polyline p = new Polyline();
-						for (int i = 0; i < npoints; i++) {
-							double x = Tools.convertToDouble(tokens.nextToken(), 0.0D);
-							double y = Tools.convertToDouble(tokens.nextToken(), 0.0D);
-							p.add(new Node(x, y));
-						}
-						cell.addOutline(frame, new Outline(p, name, klass, frame));
-					}
-				}
-				line = buffer.readLine();
+	public static StringBuilder appendLineage(StringBuilder sb, Lineage lineage) {
+		sb.setLength(0);
+		sb.append("LINEAGE, ").append(lineage.getRoots()).append(", ").append(lineage.getDivisions()).append(", ");
+		sb.append(lineage.getDefaultClass());
+		return sb.append('\n');
+	}
+
+	public static StringBuilder appendClass(StringBuilder sb, String name, PixelClass klass) {
+		sb.setLength(0);
+		sb.append("CLASS, ").append(name).append(", ").append(klass.hue).append(", ");
+		sb.append(klass.valueRegion).append(", ");
+		sb.append(klass.sizeInner).append(", ").append(klass.valueInner).append(", ");
+		sb.append(klass.sizeOuter).append(", ").append(klass.valueOuter).append(", ");
+		return sb.append('\n');
+	}
+
+	public static StringBuilder appendOutline(StringBuilder sb, Outline outline) {
+		Polyline p = outline.getPolyline();
+		sb.setLength(0);
+		sb.append("OUTLINE, ").append(outline.getCellName()).append(", ").append(outline.getClassName()).append(",");
+		appendFrame(sb, outline.getFrame()).append(", ");
+		sb.append(p.size()).append(",");
+		for (int i = 0; i < p.size(); i++) {
+			Tools.appendFixed(sb, p.getX(i), DECIMALS).append(',');
+			Tools.appendFixed(sb, p.getY(i), DECIMALS).append(',');
+		}
+		return sb.append('\n');
+	}
+
+	// The keyframes of the frames first and last, then the range of the
+	// in-between frames and the tolerance of the simplification
+	public static StringBuilder appendInterpolation(StringBuilder sb, String name, Interpolation interpolation) {
+		sb.setLength(0);
+		sb.append(INTERPOLATE).append(", ").append(name).append(", ");
+		sb.append(interpolation.getFirst()).append(", ").append(interpolation.getLast()).append(", ");
+		sb.append(interpolation.getFrom()).append(", ").append(interpolation.getTo()).append(", ");
+		sb.append(interpolation.getTolerance());
+		return sb.append('\n');
+	}
+
+	// Same as Tools.frame(), four digits at least
+	private static StringBuilder appendFrame(StringBuilder sb, int frame) {
+		if (frame >= 0) {
+			for (int d = 1000; (d > 1) && (frame < d); d /= 10) {
+				sb.append('0');
+			}
+		}
+		return sb.append(frame);
+	}
+
+	// The current project is kept if the file cannot be read up to its end
+	public static boolean load(String filename) {
+		ProjectContent content = read(filename, null);
+		if (!content.isComplete()) {
+			return false;
+		}
+		content.install();
+		open(filename, content);
+		return true;
+	}
+
+	// Parses the file without touching the current project, the caller
+	// installs a complete result with ProjectContent.install() then calls
+	// open(), an error has already been reported for an incomplete one.
+	// The binary files are recognized by their magic number, the others are
+	// read as text. The journal left next to the file is replayed over it.
+	public static ProjectContent read(String filename, WalkBar walk) {
+		ProjectContent content = new ProjectContent(walk);
+		if (ProjectBinaryReader.isBinary(filename)) {
+			ProjectBinaryReader reader = new ProjectBinaryReader(content);
+			try {
+				reader.read(filename);
+			}
+			catch (Exception ex) {
+				IJ.error("Unable to read the binary file " + filename + " at " + reader.getPosition());
+				return content;
+			}
+		}
+		else {
+			ProjectReader reader = new ProjectReader(content);
+			try {
+				reader.read(filename, true);
+			}
+			catch (Exception ex) {
+				IJ.error("Unable to read the line " + reader.getCurrentLine());
+				return content;
+			}
+		}
+		content.setComplete(true);
+		File journal = Journal.getFile(filename);
+		if (journal.exists()) {
+			ProjectReader reader = new ProjectReader(content);
+			try {
+				reader.read(journal.getAbsolutePath());
+			}
+			catch (Exception ex) {
+				IJ.log("Journal " + journal.getName() + " replayed up to the line " + reader.getCurrentLine());
+			}
+			content.setJournaled(true);
+		}
+		return content;
+	}
+
+	// To call once the complete content is installed: a replayed journal is
+	// compacted into the project file, then a new journal records the next edits
+	public static void open(String filename, ProjectContent content) {
+		if (content.isJournaled()) {
+			if (write(filename)) {
+				attach(filename, true);
+			}
+			else {
+				attach(filename, false);
 			}
-			buffer.close();
 		}
-		catch (Exception ex) {
-			IJ.error("Unable to read the line " + line);
+		else {
+			attach(filename, true);
 		}
 	}
 
@@ -0,0 +1,230 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package celllineagetracer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import celllineagetracer.cell.Cell;
+import celllineagetracer.outline.Interpolation;
+import celllineagetracer.outline.Outline;
+import celllineagetracer.pixelclass.PixelClass;
+import ij.IJ;
+
+// Append-only journal of the edits made since the project file was written,
+// kept next to it. The records are the rows of the text format plus the
+// removals; they are queued by the editing thread and written and synced to
+// the disk by a background thread. The journal is replayed over the project
+// when it is opened again.
+public class Journal implements Runnable {
+	public static final String EXTENSION = ".journal";
+	public static final String DELETE = "DELETE";
+	public static final String REMOVE_CELL = "REMOVE_CELL";
+	public static final String REMOVE_CLASS = "REMOVE_CLASS";
+	public static final String COMMIT = "COMMIT";
+	private static final String STOP = new String("STOP");
+
+	private File project;
+	private File file;
+	private FileOutputStream stream;
+	private Writer writer;
+	private LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<String>();
+	private StringBuilder sb = new StringBuilder();
+	private Thread thread;
+	private long queued = 0;
+	private long written = 0;
+	private long committed = 0;
+	private boolean failed = false;
+
+	public static File getFile(String project) {
+		return new File(project + EXTENSION);
+	}
+
+	public Journal(String project) throws IOException {
+		this.project = new File(project).getAbsoluteFile();
+		this.file = getFile(project);
+		this.stream = new FileOutputStream(this.file, true);
+		this.writer = new OutputStreamWriter(this.stream);
+		this.committed = this.file.length();
+		this.thread = new Thread(this, "Journal " + this.file.getName());
+		this.thread.setDaemon(true);
+		this.thread.setPriority(Thread.MIN_PRIORITY);
+		this.thread.start();
+	}
+
+	public boolean isJournalOf(String project) {
+		return this.project.equals(new File(project).getAbsoluteFile());
+	}
+
+	// The rows are formatted in the shared builder, under the lock of the journal
+	public synchronized void putOutline(Outline outline) {
+		if (outline != null) {
+			record(ICLTFile.appendOutline(this.sb, outline).toString());
+		}
+	}
+
+	public synchronized void putInterpolation(String cell, Interpolation interpolation) {
+		record(ICLTFile.appendInterpolation(this.sb, cell, interpolation).toString());
+	}
+
+	public void deleteOutline(Outline outline) {
+		if (outline != null) {
+			record(DELETE + ", " + outline.getCellName() + ", " + outline.getFrame() + "\n");
+		}
+	}
+
+	public synchronized void putCell(String name, Cell cell) {
+		record(ICLTFile.appendCell(this.sb, name, cell).toString());
+	}
+
+	public void removeCell(String name) {
+		record(REMOVE_CELL + ", " + name + "\n");
+	}
+
+	public synchronized void putClass(String name, PixelClass klass) {
+		record(ICLTFile.appendClass(this.sb, name, klass).toString());
+	}
+
+	public void removeClass(String name) {
+		record(REMOVE_CLASS + ", " + name + "\n");
+	}
+
+	private synchronized void record(String line) {
+		this.queued++;
+		this.queue.add(line);
+	}
+
+	// Waits until the records already queued are on the disk
+	public synchronized void flush() {
+		while ((this.written < this.queued) && !this.failed && this.thread.isAlive()) {
+			try {
+				wait();
+			}
+			catch (InterruptedException ex) {
+				return;
+			}
+		}
+	}
+
+	// Marks the current state as saved by the user
+	public synchronized void commit() {
+		record(COMMIT + "\n");
+		flush();
+		this.committed = this.file.length();
+	}
+
+	// An empty journal is removed, nothing to replay
+	public void close() {
+		record(STOP);
+		try {
+			this.thread.join();
+		}
+		catch (InterruptedException ex) {
+		}
+		if (this.file.length() == 0) {
+			this.file.delete();
+		}
+	}
+
+	// Closes the journal and truncates the records after the last commit
+	public void discard() {
+		close();
+		try {
+			if (this.committed == 0) {
+				this.file.delete();
+			}
+			else {
+				FileOutputStream out = new FileOutputStream(this.file, true);
+				try {
+					out.getChannel().truncate(this.committed);
+				}
+				finally {
+					out.close();
+				}
+			}
+		}
+		catch (IOException ex) {
+			IJ.log("Unable to discard the journal " + this.file.getName());
+		}
+	}
+
+	public void run() {
+		ArrayList<String> lines = new ArrayList<String>();
+		boolean stop = false;
+		while (!stop) {
+			try {
+				lines.add(this.queue.take());
+			}
+			catch (InterruptedException ex) {
+				break;
+			}
+			// All the records queued meanwhile are written in one batch
+			this.queue.drainTo(lines);
+			try {
+				for (String line : lines) {
+					if (line == STOP) {
+						stop = true;
+					}
+					else {
+						this.writer.write(line);
+					}
+				}
+				this.writer.flush();
+				this.stream.getFD().sync();
+			}
+			catch (IOException ex) {
+				IJ.log("Unable to write the journal " + this.file.getName());
+				synchronized (this) {
+					this.failed = true;
+				}
+			}
+			synchronized (this) {
+				this.written += lines.size();
+				notifyAll();
+			}
+			lines.clear();
+		}
+		try {
+			this.writer.close();
+		}
+		catch (IOException ex) {
+		}
+	}
+}
@@ -34,6 +34,7 @@
 
 package celllineagetracer;
 
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
@@ -46,8 +47,12 @@ import javax.swing.JPanel;
 import javax.swing.JTextField;
 
 import additionaluserinterface.GridPanel;
-import celllineagetracer.outline.Outline;
 import celllineagetracer.pixelclass.PixelClass;
+import celllineagetracer.raster.ExportEngine;
+import celllineagetracer.raster.ExportSnapshot;
+import celllineagetracer.raster.FrameRenderer;
+import celllineagetracer.raster.Morphology;
+import celllineagetracer.raster.Spans;
 import ij.IJ;
 import ij.ImagePlus;
 import ij.ImageStack;
@@ -136,23 +141,24 @@ public class Labelization implements ActionListener, Runnable {
 	}
 
 	public void showLabel(int channel, int slice) {
-		ImageStack stack = new ImageStack(this.nx, this.ny);
 		for (String klass : Supervisor.classes.keySet()) {
 			PixelClass pc = (PixelClass) Supervisor.classes.get(klass);
 			IJ.log("Class: " + klass + " hue: " + pc.hue + " value: " + pc.valueRegion);
 		}
-		for (int frame = 1; frame <= this.nt; frame++) {
-			Supervisor.imp.setPosition(channel, slice, frame);
-			Object outlines = Supervisor.getOutlinesAtFrame(frame);
-			ByteProcessor lab = computeFrame((ArrayList) outlines);
+		final ByteProcessor[] labs = new ByteProcessor[this.nt];
+		ExportEngine.run(new ExportSnapshot(this.nt), new FrameRenderer() {
+			public void render(int frame, ArrayList<ExportSnapshot.Shape> shapes) {
+				labs[frame - 1] = computeFrame(shapes);
+			}
+		});
+		ImageStack stack = new ImageStack(this.nx, this.ny);
+		for (ByteProcessor lab : labs) {
 			stack.addSlice(lab);
 		}
 		new ImagePlus("lab", stack).show();
 	}
 
-	public void saveLabel(int channel, int slice, String dirData, String dirLabel) {
-		int nc = Supervisor.imp.getNChannels();
-		int nz = Supervisor.imp.getNSlices();
+	public void saveLabel(final int channel, final int slice, final String dirData, final String dirLabel) {
 		try {
 			File dir1 = new File(dirData).getParentFile();
 			if (!dir1.isDirectory()) {
@@ -175,178 +181,98 @@ public class Labelization implements ActionListener, Runnable {
 				return;
 			}
 		}
-		catch (Exception localException) {
-			File dir2;
-			for (String klass : Supervisor.classes.keySet()) {
-				PixelClass pc = (PixelClass) Supervisor.classes.get(klass);
-				IJ.log("Class: " + klass + " hue: " + pc.hue + " value: " + pc.valueRegion + " (" + pc.sizeInner + ","
-						+ pc.sizeOuter + ")");
-			}
-			for (int frame = 1; frame <= this.nt; frame++) {
-				Supervisor.imp.setPosition(channel, slice, frame);
-				ArrayList<Outline> outlines = Supervisor.getOutlinesAtFrame(frame);
-				ByteProcessor lab = computeFrame(outlines);
+		catch (Exception ex) {
+			IJ.error("Unable to create the directories " + dirData + " and " + dirLabel);
+			return;
+		}
+		for (String klass : Supervisor.classes.keySet()) {
+			PixelClass pc = (PixelClass) Supervisor.classes.get(klass);
+			IJ.log("Class: " + klass + " hue: " + pc.hue + " value: " + pc.valueRegion + " (" + pc.sizeInner + ","
+					+ pc.sizeOuter + ")");
+		}
+		final ImagePlus imp = Supervisor.imp;
+		final ImageStack data = imp.getStack();
+		ExportEngine.run(new ExportSnapshot(this.nt), new FrameRenderer() {
+			public void render(int frame, ArrayList<ExportSnapshot.Shape> shapes) {
+				ByteProcessor lab = computeFrame(shapes);
 				try {
-					int n = (frame - 1) * nc * nz + (slice - 1) * nc + channel;
-					String la = Supervisor.imp.getStack().getShortSliceLabel(n) + ".tif";
+					int n = imp.getStackIndex(channel, slice, frame);
+					String la = data.getShortSliceLabel(n) + ".tif";
 					IJ.log("Save Label: " + la);
 					new FileSaver(new ImagePlus("", lab)).saveAsTiff(dirLabel + la);
-					new FileSaver(new ImagePlus("", Supervisor.imp.getProcessor())).saveAsTiff(dirData + la);
+					new FileSaver(new ImagePlus("", data.getProcessor(n))).saveAsTiff(dirData + la);
 				}
 				catch (Exception localException1) {
 				}
 			}
-		}
+		});
 	}
 
-	private ByteProcessor computeFrame(ArrayList<Outline> outlines) {
+	private ByteProcessor computeFrame(ArrayList<ExportSnapshot.Shape> shapes) {
 		ByteProcessor lab = new ByteProcessor(this.nx, this.ny);
-		for (Outline outline : outlines) {
-			int frame = outline.getFrame();
-			String name = outline.klass;
-			PixelClass item = (PixelClass) Supervisor.classes.get(name);
-			if (item != null) {
-				IJ.log("Labelisation Frame " + frame + "outlines of cell:" + name);
-
-				ByteProcessor base = fill(outline, item.valueRegion, frame);
-				if (item.sizeInner >= 1) {
-					boolean[][] be = disc(2 * item.sizeInner + 1);
-					increment(lab, erosion(base, be, item.valueRegion, item.valueInner));
+		byte[] pixels = (byte[]) lab.getPixels();
+		for (ExportSnapshot.Shape shape : shapes) {
+			if (shape.klass != null) {
+				Spans spans = shape.fill(this.nx, this.ny);
+				if (spans.size() > 0) {
+					label(pixels, spans, shape.klass);
 				}
-				if (item.sizeOuter >= 1) {
-					boolean[][] bd = disc(2 * item.sizeOuter + 1);
-					increment(lab, dilation(base, bd, item.valueRegion, item.valueOuter));
-				}
-				increment(lab, base);
 			}
 		}
 		return lab;
 	}
 
-	private void increment(ByteProcessor a, ByteProcessor b) {
-		byte[] ba = (byte[]) a.getPixels();
-		byte[] bb = (byte[]) b.getPixels();
-		for (int i = 0; i < ba.length; i++) {
-			if ((ba[i] == 0) && (bb[i] != 0)) {
-				ba[i] = bb[i];
-			}
-		}
-	}
-
-	private ByteProcessor fill(Outline outline, double valueRegion, int frame) {
-		ByteProcessor base = new ByteProcessor(this.nx, this.ny);
-		int count = 0;
-		for (int i = 0; i < this.nx; i++) {
-			for (int j = 0; j < this.ny; j++) {
-				if (outline.contains(i, j)) {
-					base.putPixelValue(i, j, valueRegion);
-					count++;
-				}
+	// Region, inner band and outer band of one outline, computed in the
+	// bounding box of the outline enlarged by the size of the bands.
+	private void label(byte[] pixels, Spans spans, PixelClass item) {
+		int margin = Math.max(0, Math.max(item.sizeInner, item.sizeOuter));
+		Rectangle box = spans.getBounds();
+		int x0 = Math.max(0, box.x - margin);
+		int y0 = Math.max(0, box.y - margin);
+		int x1 = Math.min(this.nx, box.x + box.width + margin);
+		int y1 = Math.min(this.ny, box.y + box.height + margin);
+		int w = x1 - x0;
+		int h = y1 - y0;
+		boolean[] region = new boolean[w * h];
+		for (int i = 0; i < spans.size(); i++) {
+			int offset = (spans.getY(i) - y0) * w - x0;
+			for (int x = spans.getStart(i); x < spans.getEnd(i); x++) {
+				region[offset + x] = true;
 			}
 		}
-		IJ.log("Frame " + frame + " " + outline.klass + " pixels " + count + " (" + valueRegion + ")");
-		return base;
-	}
-
-	private boolean[][] disc(int n) {
-		if (n <= 1) {
-			return new boolean[][] { { true } };
-		}
-		boolean[][] se = new boolean[n][n];
-		double a = n / 2.0D * (n / 2.0D);
-		double b = n / 2.0D * n;
-		for (int k = 0; k < n; k++) {
-			for (int l = 0; l < n; l++) {
-				int kk = k - n / 2;
-				int ll = l - n / 2;
-				if (kk * kk / a + ll * ll / b < 1.0D) {
-					se[k][l] = true;
-				}
-				else {
-					se[k][l] = false;
-				}
+		if (item.sizeInner >= 1) {
+			boolean[] background = new boolean[w * h];
+			for (int i = 0; i < w * h; i++) {
+				background[i] = !region[i];
 			}
-		}
-		return se;
-	}
-
-	private ByteProcessor erosion(ByteProcessor input, boolean[][] b, double value, double valueContour) {
-		int nx = input.getWidth();
-		int ny = input.getHeight();
-		int m = b.length;
-		int h = m / 2;
-		ByteProcessor output = new ByteProcessor(nx, ny);
-		for (int x = 0; x < nx; x++) {
-			for (int y = 0; y < ny; y++) {
-				if (input.getPixelValue(x, y) == value) {
-					double min = Double.MAX_VALUE;
-					for (int i = 0; i < m; i++) {
-						for (int j = 0; j < m; j++) {
-							if (b[i][j] != false) {
-								int k = Math.max(0, Math.min(nx - 1, x + i - h));
-								int l = Math.max(0, Math.min(ny - 1, y + j - h));
-								if (input.getPixelValue(k, l) < min) {
-									min = input.getPixelValue(k, l);
-								}
-							}
-						}
-					}
-					output.putPixelValue(x, y, min);
-				}
+			boolean[] near = Morphology.dilate(background, w, h, item.sizeInner);
+			for (int i = 0; i < w * h; i++) {
+				near[i] = near[i] && region[i];
 			}
+			increment(pixels, near, x0, y0, w, h, item.valueInner);
 		}
-		for (int x = 0; x < nx; x++) {
-			for (int y = 0; y < ny; y++) {
-				if (input.getPixelValue(x, y) == value) {
-					if (output.getPixel(x, y) == 0) {
-						output.putPixelValue(x, y, valueContour);
-					}
-					else {
-						output.putPixelValue(x, y, 0.0D);
-					}
-				}
+		if (item.sizeOuter >= 1) {
+			boolean[] near = Morphology.dilate(region, w, h, item.sizeOuter);
+			for (int i = 0; i < w * h; i++) {
+				near[i] = near[i] && !region[i];
 			}
+			increment(pixels, near, x0, y0, w, h, item.valueOuter);
 		}
-		return output;
+		increment(pixels, region, x0, y0, w, h, item.valueRegion);
 	}
 
-	public ByteProcessor dilation(ByteProcessor input, boolean[][] b, double value, double valueContour) {
-		int nx = input.getWidth();
-		int ny = input.getHeight();
-		int m = b.length;
-		int h = m / 2;
-		ByteProcessor output = (ByteProcessor) input.duplicate();
-		for (int x = 0; x < nx; x++) {
-			for (int y = 0; y < ny; y++) {
-				if (input.getPixelValue(x, y) == 0.0F) {
-					double max = -1.7976931348623157E308D;
-					for (int i = 0; i < m; i++) {
-						for (int j = 0; j < m; j++) {
-							if (b[i][j] != false) {
-								int k = Math.max(0, Math.min(nx - 1, x + i - h));
-								int l = Math.max(0, Math.min(ny - 1, y + j - h));
-								if (input.getPixelValue(k, l) > max) {
-									max = input.getPixelValue(k, l);
-								}
-							}
-						}
-					}
-					output.putPixelValue(x, y, max);
-				}
-			}
+	private void increment(byte[] pixels, boolean[] mask, int x0, int y0, int w, int h, int value) {
+		byte v = (byte) value;
+		if (v == 0) {
+			return;
 		}
-		for (int x = 0; x < nx; x++) {
-			for (int y = 0; y < ny; y++) {
-				if (output.getPixelValue(x, y) == value) {
-					if (input.getPixelValue(x, y) == 0.0F) {
-						output.putPixelValue(x, y, valueContour);
-					}
-					else {
-						output.putPixelValue(x, y, 0.0D);
-					}
+		for (int y = 0; y < h; y++) {
+			int offset = (y + y0) * this.nx + x0;
+			for (int x = 0; x < w; x++) {
+				if (mask[y * w + x] && (pixels[offset + x] == 0)) {
+					pixels[offset + x] = v;
 				}
 			}
 		}
-		return output;
 	}
 }
@@ -39,9 +39,13 @@ import java.awt.event.ActionListener;
 import java.awt.geom.Point2D;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
@@ -51,11 +55,18 @@ import javax.swing.JPanel;
 
 import additionaluserinterface.GridPanel;
 import celllineagetracer.cell.Cell;
+import celllineagetracer.outline.MeasureResults;
 import celllineagetracer.outline.MeasureTable;
 import celllineagetracer.outline.Outline;
+import celllineagetracer.polyline.Moments;
+import celllineagetracer.raster.ScanlineFill;
+import celllineagetracer.raster.SpanStatistics;
+import celllineagetracer.raster.Spans;
 import ij.IJ;
 import ij.ImagePlus;
+import ij.ImageStack;
 import ij.gui.PolygonRoi;
+import ij.measure.Calibration;
 import ij.measure.ResultsTable;
 import ij.plugin.filter.Analyzer;
 
@@ -66,6 +77,14 @@ public class Measure implements ActionListener, Runnable {
 	private JButton job;
 	private JComboBox<String> cmbChannel = new JComboBox<String>();
 	private JComboBox<String> cmbSlice = new JComboBox<String>();
+	private JComboBox<String> cmbEngine = new JComboBox<String>(new String[] { "Native", "ImageJ Analyzer" });
+	// Columns before the intensity statistics: names, geometry, position; the
+	// shape descriptors follow the intensity statistics
+	private static final int FIXED = 10;
+	private IdentityHashMap<Outline, CachedMeasure> cache = new IdentityHashMap<Outline, CachedMeasure>();
+	private ImagePlus cacheImage = null;
+	private ImageStack cacheStack = null;
+	private Calibration cacheCalibration = null;
 
 	public JPanel getPanel() {
 		int nz = Supervisor.imp.getNSlices();
@@ -79,6 +98,8 @@ public class Measure implements ActionListener, Runnable {
 			this.cmbChannel.addItem("Channel " + i);
 		}
 		GridPanel pnMeasure = new GridPanel("Measurement", 4);
+		pnMeasure.place(9, 0, new JLabel("Engine"));
+		pnMeasure.place(9, 1, this.cmbEngine);
 		pnMeasure.place(10, 0, 2, 1, new JLabel("ImageJ bug: do not check 'Display Label'"));
 		pnMeasure.place(11, 0, 2, 1, this.bnSetMeasurements);
 		pnMeasure.place(12, 0, new JLabel("Channel"));
@@ -119,6 +140,229 @@ public class Measure implements ActionListener, Runnable {
 	}
 
 	public void measure() {
+		if (this.cmbEngine.getSelectedIndex() == 0) {
+			measureNative();
+		}
+		else {
+			measureAnalyzer();
+		}
+	}
+
+	private void measureNative() {
+		ImagePlus imp = Supervisor.imp;
+		int channel = this.cmbChannel.getSelectedIndex();
+		int slice = this.cmbSlice.getSelectedIndex();
+		NativeMeasure measure = new NativeMeasure(imp, channel, slice);
+
+		// The in-between outlines of the interpolations are computed by the
+		// tasks, one at a time, and are not kept in the cache
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<Cell> cells = new ArrayList<Cell>();
+		ArrayList<Outline> outlines = new ArrayList<Outline>();
+		ArrayList<Integer> frames = new ArrayList<Integer>();
+		for (String name : Supervisor.cells.keySet()) {
+			Cell cell = (Cell) Supervisor.cells.get(name);
+			Set<Integer> co = cell.getListFrames();
+			for (int frame : co) {
+				names.add(name);
+				cells.add(cell);
+				outlines.add(cell.getKeyframe(frame));
+				frames.add(frame);
+			}
+		}
+
+		// Only the outlines edited, created or moved since the last run are
+		// measured again, the others reuse the rows kept in the cache. The
+		// edits of the pixels are not tracked, a modified image is measured
+		// again in full.
+		Calibration cal = imp.getCalibration();
+		if ((this.cacheImage != imp) || (this.cacheStack != imp.getStack()) || imp.changes
+				|| !sameCalibration(this.cacheCalibration, cal)) {
+			this.cache.clear();
+			this.cacheImage = imp;
+			this.cacheStack = imp.getStack();
+			this.cacheCalibration = cal.copy();
+		}
+		int n = outlines.size();
+		double[][][] rows = new double[n][][];
+		String[] classes = new String[n];
+		ArrayList<Integer> todo = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++) {
+			Outline outline = outlines.get(i);
+			CachedMeasure cached = outline == null ? null : this.cache.get(outline);
+			if (cached != null && cached.isValid(outline, frames.get(i), channel, slice)) {
+				rows[i] = cached.rows;
+				classes[i] = outline.getClassName();
+			}
+			else {
+				todo.add(i);
+			}
+		}
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		try {
+			pool.invoke(new MeasureTask(measure, cells, outlines, frames, todo, rows, classes, 0, todo.size()));
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		IdentityHashMap<Outline, CachedMeasure> cache = new IdentityHashMap<Outline, CachedMeasure>();
+		MeasureResults results = createResults(SpanStatistics.HEADERS);
+		for (int i = 0; i < n; i++) {
+			Outline outline = outlines.get(i);
+			if (outline != null) {
+				cache.put(outline, new CachedMeasure(outline, frames.get(i), channel, slice, rows[i]));
+			}
+			for (double[] row : rows[i]) {
+				results.addRow(names.get(i), classes[i], row);
+			}
+		}
+		this.cache = cache;
+		showTable(results, channel, slice);
+	}
+
+	// Spatial and value calibrations, the measures are in calibrated units
+	private static boolean sameCalibration(Calibration a, Calibration b) {
+		if ((a == null) || (b == null)) {
+			return a == b;
+		}
+		return (a.pixelWidth == b.pixelWidth) && (a.pixelHeight == b.pixelHeight) && (a.pixelDepth == b.pixelDepth)
+				&& (a.xOrigin == b.xOrigin) && (a.yOrigin == b.yOrigin) && (a.zOrigin == b.zOrigin)
+				&& (a.getInvertY() == b.getInvertY()) && a.getUnit().equals(b.getUnit())
+				&& (a.getFunction() == b.getFunction()) && Arrays.equals(a.getCoefficients(), b.getCoefficients())
+				&& a.getValueUnit().equals(b.getValueUnit());
+	}
+
+	private static class CachedMeasure {
+		private int version;
+		private int frame;
+		private int channel;
+		private int slice;
+		private double[][] rows;
+
+		public CachedMeasure(Outline outline, int frame, int channel, int slice, double[][] rows) {
+			this.version = outline.getVersion();
+			this.frame = frame;
+			this.channel = channel;
+			this.slice = slice;
+			this.rows = rows;
+		}
+
+		public boolean isValid(Outline outline, int frame, int channel, int slice) {
+			return this.version == outline.getVersion() && this.frame == frame && this.channel == channel
+					&& this.slice == slice;
+		}
+	}
+
+	private static class NativeMeasure {
+		private ImagePlus imp;
+		private ImageStack stack;
+		private Calibration cal;
+		private float[] cTable = null;
+		private int nx;
+		private int ny;
+		private int minChannel;
+		private int maxChannel;
+		private int minSlice;
+		private int maxSlice;
+
+		public NativeMeasure(ImagePlus imp, int channel, int slice) {
+			this.imp = imp;
+			this.stack = imp.getStack();
+			this.cal = imp.getCalibration();
+			int depth = imp.getBitDepth();
+			if (this.cal.calibrated() && ((depth == 8) || (depth == 16))) {
+				this.cTable = this.cal.getCTable();
+			}
+			this.nx = imp.getWidth();
+			this.ny = imp.getHeight();
+			this.minChannel = channel == 0 ? 1 : channel;
+			this.maxChannel = channel == 0 ? imp.getNChannels() : channel;
+			this.minSlice = slice == 0 ? 1 : slice;
+			this.maxSlice = slice == 0 ? imp.getNSlices() : slice;
+		}
+
+		public double[][] measure(Outline outline, int frame) {
+			int ncol = SpanStatistics.HEADERS.length;
+			Point2D.Double cog = outline.getCoG();
+			Moments moments = outline.getMoments();
+			Spans spans = ScanlineFill.fill(outline, this.nx, this.ny, true);
+			Object[] planes = new Object[(this.maxSlice - this.minSlice + 1) * (this.maxChannel - this.minChannel + 1)];
+			int k = 0;
+			for (int z = this.minSlice; z <= this.maxSlice; z++) {
+				for (int c = this.minChannel; c <= this.maxChannel; c++) {
+					planes[k++] = this.stack.getPixels(this.imp.getStackIndex(c, z, frame));
+				}
+			}
+			SpanStatistics[] stats = SpanStatistics.measure(spans, planes, this.nx, this.cTable);
+			double[][] rows = new double[planes.length][];
+			k = 0;
+			for (int z = this.minSlice; z <= this.maxSlice; z++) {
+				for (int c = this.minChannel; c <= this.maxChannel; c++) {
+					double[] values = stats[k].getValues(this.cal, this.ny);
+					double[] row = new double[FIXED + ncol + Moments.HEADERS.length];
+					fillRow(row, outline, cog, moments, c, z, frame, ncol);
+					System.arraycopy(values, 0, row, FIXED, ncol);
+					rows[k++] = row;
+				}
+			}
+			return rows;
+		}
+	}
+
+	// Splits the list of outlines to measure in blocks measured by the
+	// workers, each outline writes its rows in its own slot of the array so
+	// the table keeps the same order as a serial run.
+	private static class MeasureTask extends RecursiveAction {
+		private static final int GRAIN = 16;
+		private NativeMeasure measure;
+		private ArrayList<Cell> cells;
+		private ArrayList<Outline> outlines;
+		private ArrayList<Integer> frames;
+		private ArrayList<Integer> todo;
+		private double[][][] rows;
+		private String[] classes;
+		private int from;
+		private int to;
+
+		public MeasureTask(NativeMeasure measure, ArrayList<Cell> cells, ArrayList<Outline> outlines,
+				ArrayList<Integer> frames, ArrayList<Integer> todo, double[][][] rows, String[] classes, int from,
+				int to) {
+			this.measure = measure;
+			this.cells = cells;
+			this.outlines = outlines;
+			this.frames = frames;
+			this.todo = todo;
+			this.rows = rows;
+			this.classes = classes;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (this.to - this.from <= GRAIN) {
+				for (int k = this.from; k < this.to; k++) {
+					int i = this.todo.get(k);
+					int frame = this.frames.get(i);
+					Outline outline = this.outlines.get(i);
+					if (outline == null) {
+						outline = this.cells.get(i).getOutline(frame);
+					}
+					this.rows[i] = this.measure.measure(outline, frame);
+					this.classes[i] = outline.getClassName();
+				}
+				return;
+			}
+			int middle = (this.from + this.to) / 2;
+			invokeAll(
+					new MeasureTask(this.measure, this.cells, this.outlines, this.frames, this.todo, this.rows,
+							this.classes, this.from, middle),
+					new MeasureTask(this.measure, this.cells, this.outlines, this.frames, this.todo, this.rows,
+							this.classes, middle, this.to));
+		}
+	}
+
+	private void measureAnalyzer() {
 		IJ.run("Clear Results");
 		ImagePlus imp = Supervisor.imp;
 		int frameStart = imp.getFrame();
@@ -135,7 +379,7 @@ public class Measure implements ActionListener, Runnable {
 		int maxSlice = slice == 0 ? imp.getNSlices() : slice;
 		IJ.log(" maxChannel " + minChannel + " /" + maxChannel);
 		IJ.log(" maxSlice " + minSlice + " /" + maxSlice);
-		ArrayList<String[]> rows = new ArrayList();
+		MeasureResults results = null;
 		imp.setPosition(channelStart, sliceStart, frameStart);
 		String[] headersTable = null;
 		ResultsTable rt = Analyzer.getResultsTable();
@@ -148,7 +392,7 @@ public class Measure implements ActionListener, Runnable {
 
 		for (String name : Supervisor.cells.keySet()) {
 			Cell cell = (Cell) Supervisor.cells.get(name);
-			Set<Integer> co = cell.getListOutlinesFrame();
+			Set<Integer> co = cell.getListFrames();
 			for(int frame : co) {
 
 				Outline outline = cell.getOutline(frame);
@@ -156,7 +400,8 @@ public class Measure implements ActionListener, Runnable {
 				for (int c = minChannel; c <= maxChannel; c++) {
 					imp.setPosition(c, z, frame);
 					imp.updateAndDraw();
-					Point2D.Double cog = outline.getPolyline().computeCoG();
+					Point2D.Double cog = outline.getCoG();
+					Moments moments = outline.getMoments();
 
 					PolygonRoi roi = new PolygonRoi(outline.getPolygon(), 2);
 					imp.setRoi(roi);
@@ -164,50 +409,75 @@ public class Measure implements ActionListener, Runnable {
 					analyzer.run(imp.getProcessor());
 					analyzer.displayResults();
 
-					headersTable = rt.getHeadings();
-					int ncol = rt.getHeadings().length;
-					String[] row = new String[10 + ncol];
-					row[0] = outline.cell;
-					row[1] = outline.klass;
-					row[2] = "" + outline.getFrame();
-					row[3] = "" + outline.getPolyline().size();
-					row[4] = String.format("%3.2f", outline.getPolyline().length());
-					row[5] = String.format("%3.2f", cog.x);
-					row[6] = String.format("%3.2f", cog.y);
-					row[7] = "" + c;
-					row[8] = "" + z;
-					row[9] = "" + frame;
+					if (results == null) {
+						headersTable = rt.getHeadings();
+						results = createResults(headersTable);
+					}
+					int ncol = headersTable.length;
+					double[] row = new double[FIXED + ncol + Moments.HEADERS.length];
+					fillRow(row, outline, cog, moments, c, z, frame, ncol);
 					for (int col = 0; col < ncol; col++) {
-						row[(10 + col)] = rt.getStringValue(headersTable[col], rt.getCounter() - 1);
+						String value = rt.getStringValue(headersTable[col], rt.getCounter() - 1);
+						row[(FIXED + col)] = Tools.convertToDouble(value, Double.NaN);
 					}
-					rows.add(row);
+					results.addRow(outline.getCellName(), outline.getClassName(), row);
 				}
 				}
 			}
 		}
-		if (rows.size() > 0) {
-			int ncol = headersTable.length;
-			String[] headers = new String[10 + ncol];
-			headers[0] = "Cell";
-			headers[1] = "Class";
-			headers[2] = "ID";
-			headers[3] = "Nodes";
-			headers[4] = "Length";
-			headers[5] = "XG";
-			headers[6] = "YG";
-			headers[7] = "Channel";
-			headers[8] = "Slice";
-			headers[9] = "Frame";
-			for (int i = 0; i < headersTable.length; i++) {
-				headers[(10 + i)] = headersTable[i];
-			}
-			MeasureTable table = new MeasureTable(headers);
-			try {
-				table.setData(rows);
-			}
-			catch (Exception ex) {
-				IJ.error(ex.toString());
-			}
+		if (results != null) {
+			showTable(results, channel, slice);
+		}
+		imp.killRoi();
+		imp.setPosition(channelStart, sliceStart, frameStart);
+	}
+
+	private static void fillRow(double[] row, Outline outline, Point2D.Double cog, Moments moments, int c, int z,
+			int frame, int ncol) {
+		row[2] = outline.getFrame();
+		row[3] = outline.getPolyline().size();
+		row[4] = outline.getLength();
+		row[5] = cog.x;
+		row[6] = cog.y;
+		row[7] = c;
+		row[8] = z;
+		row[9] = frame;
+		double[] shape = moments.getValues();
+		System.arraycopy(shape, 0, row, FIXED + ncol, shape.length);
+	}
+
+	private static MeasureResults createResults(String[] headersTable) {
+		int ncol = headersTable.length;
+		int nshape = Moments.HEADERS.length;
+		String[] headers = new String[FIXED + ncol + nshape];
+		int[] decimals = new int[FIXED + ncol + nshape];
+		headers[0] = "Cell";
+		headers[1] = "Class";
+		headers[2] = "ID";
+		headers[3] = "Nodes";
+		headers[4] = "Length";
+		headers[5] = "XG";
+		headers[6] = "YG";
+		decimals[4] = 2;
+		decimals[5] = 2;
+		decimals[6] = 2;
+		headers[7] = "Channel";
+		headers[8] = "Slice";
+		headers[9] = "Frame";
+		for (int i = 0; i < ncol; i++) {
+			headers[(FIXED + i)] = headersTable[i];
+			decimals[(FIXED + i)] = 3;
+		}
+		for (int i = 0; i < nshape; i++) {
+			headers[(FIXED + ncol + i)] = Moments.HEADERS[i];
+			decimals[(FIXED + ncol + i)] = 3;
+		}
+		return new MeasureResults(headers, decimals);
+	}
+
+	private void showTable(MeasureResults results, int channel, int slice) {
+		if (results.getRowCount() > 0) {
+			MeasureTable table = new MeasureTable(results);
 			SimpleDateFormat formatter = new SimpleDateFormat(" yyyy-MM-dd-HH-mm-ss");
 			String formattedDate = formatter.format(new Date());
 
@@ -218,7 +488,5 @@ public class Measure implements ActionListener, Runnable {
 			title = title + formattedDate;
 			table.show(title, 800, 200);
 		}
-		imp.killRoi();
-		imp.setPosition(channelStart, sliceStart, frameStart);
 	}
 }
@@ -0,0 +1,53 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package celllineagetracer;
+
+import celllineagetracer.outline.Outline;
+import java.util.Collection;
+
+// Receives the changes of the project, the Supervisor delivers them on the
+// event dispatch thread, the changes fired in a row arriving together
+public interface ModelListener {
+	public static final int CELLS = 1;
+	public static final int CLASSES = 2;
+	public static final int OUTLINES = 4;
+	public static final int SELECTION = 8;
+	public static final int ALL = CELLS | CLASSES | OUTLINES | SELECTION;
+
+	// The changes are a combination of the flags above. The outlines are the
+	// ones added, removed or edited since the last delivery, null when they
+	// are too many or not known and the views have to be rebuilt.
+	public void modelChanged(int changes, Collection<Outline> outlines);
+}
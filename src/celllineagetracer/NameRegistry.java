@@ -0,0 +1,84 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package celllineagetracer;
+
+import java.util.HashMap;
+
+// Gives a compact int id to each name, the ids are never reused so that the
+// outlines and the arrays indexed by id can keep them across the projects.
+// The id of a null name is -1.
+public class NameRegistry {
+	private HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	private volatile String[] names = new String[16];
+	private int count = 0;
+
+	public synchronized int getId(String name) {
+		if (name == null) {
+			return -1;
+		}
+		Integer id = this.ids.get(name);
+		if (id != null) {
+			return id.intValue();
+		}
+		String[] names = this.names;
+		if (this.count == names.length) {
+			String[] grown = new String[2 * names.length];
+			System.arraycopy(names, 0, grown, 0, this.count);
+			names = grown;
+		}
+		names[this.count] = name;
+		this.names = names;
+		this.ids.put(name, this.count);
+		return this.count++;
+	}
+
+	// Id of a name already registered, -1 otherwise
+	public synchronized int findId(String name) {
+		Integer id = name == null ? null : this.ids.get(name);
+		return id == null ? -1 : id.intValue();
+	}
+
+	public String getName(int id) {
+		String[] names = this.names;
+		if ((id < 0) || (id >= names.length)) {
+			return null;
+		}
+		return names[id];
+	}
+
+	public synchronized int size() {
+		return this.count;
+	}
+}
@@ -36,8 +36,7 @@ package celllineagetracer;
 
 import additionaluserinterface.GridPanel;
 import additionaluserinterface.SpinnerInteger;
-import celllineagetracer.cell.Cell;
-import celllineagetracer.cell.Cells;
+import celllineagetracer.cell.Lineage;
 import celllineagetracer.pixelclass.PixelClasses;
 import ij.gui.GUI;
 import java.awt.BorderLayout;
@@ -119,25 +118,24 @@ public class NewDialog extends JDialog implements ActionListener {
 		if (event.getSource() == this.bnOK) {
 			if (this.rbFile.isSelected()) {
 				String path = ICLTFile.browseOpen(this.txtPath.getText());
-				if (path != null) {
-					ICLTFile.load(path);
+				if ((path != null) && ICLTFile.load(path)) {
 					this.txtPath.setText(path);
 				}
 			}
 			if (this.rbBlank.isSelected()) {
+				ICLTFile.detach();
 				Supervisor.clear();
 			}
 			if (this.rbBinary.isSelected()) {
+				ICLTFile.detach();
 				Supervisor.clear();
 				int ncl = this.spnCell.get();
 				int div = this.spnDivision.get();
 				String klass = (String) this.cmbClass.getSelectedItem();
-				for (int i = 1; i <= ncl; i++) {
-					String cur = "" + i;
-					division(cur, i, div, klass);
-				}
+				Supervisor.lineage = new Lineage(ncl, div, klass);
 			}
-			this.supervisor.updateAll(null, true);
+			this.supervisor.fireChanged(ModelListener.ALL);
+			this.supervisor.select(null);
 			dispose();
 		}
 		else if (event.getSource() == this.bnCancel) {
@@ -146,16 +144,6 @@ public class NewDialog extends JDialog implements ActionListener {
 		update();
 	}
 
-	private void division(String cur, int i, int div, String klass) {
-		int hue = (int) (Math.random() * 359.0D);
-		Supervisor.cells.put(cur, new Cell(klass, hue, true, true));
-		if (cur.length() > div) {
-			return;
-		}
-		division(cur + i, i, div, klass);
-		division(cur + "0", i, div, klass);
-	}
-
 	private void update() {
 		this.spnCell.setEnabled(this.rbBinary.isSelected());
 		this.spnDivision.setEnabled(this.rbBinary.isSelected());
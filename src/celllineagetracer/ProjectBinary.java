@@ -0,0 +1,244 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package celllineagetracer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import celllineagetracer.cell.Cell;
+import celllineagetracer.cell.Cells;
+import celllineagetracer.cell.Lineage;
+import celllineagetracer.outline.Interpolation;
+import celllineagetracer.outline.Outline;
+import celllineagetracer.pixelclass.PixelClass;
+import celllineagetracer.pixelclass.PixelClasses;
+import celllineagetracer.polyline.Polyline;
+
+// Binary project container, big endian:
+//   "ICLT", int version, int scale
+//   string table: varint count, then varint length and UTF-8 bytes
+//   classes: varint count, then name, hue, region, inner size and value,
+//     outer size and value
+//   cells: varint count, then name, default class, hue, flags
+//   outlines: varint count, then cell, class, frame, varint nodes, double
+//     xg, double yg, varint bytes, and the nodes as the varint deltas of the
+//     coordinates in 1/scale pixel
+//   interpolations, since version 2: varint count, then cell, first, last,
+//     from, to, double tolerance
+//   lineage, optional: varint roots, varint divisions, default class
+// The names are indices in the string table, 0 for null and i+1 otherwise,
+// the signed values are zigzag varints.
+public class ProjectBinary {
+	public static final String EXTENSION = ".iclt";
+	public static final byte[] MAGIC = { 'I', 'C', 'L', 'T' };
+	public static final int VERSION = 2;
+	public static final int SCALE = 1000;
+	public static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public static boolean isBinary(String filename) {
+		return filename.toLowerCase().endsWith(EXTENSION);
+	}
+
+	public static void write(String filename) throws IOException {
+		Cells cells = Supervisor.cells;
+		PixelClasses classes = Supervisor.classes;
+		ArrayList<String> strings = new ArrayList<String>();
+		HashMap<String, Integer> table = new HashMap<String, Integer>();
+		for (String name : classes.keySet()) {
+			intern(name, strings, table);
+		}
+		Lineage lineage = Supervisor.lineage;
+		if (lineage != null) {
+			intern(lineage.getDefaultClass(), strings, table);
+		}
+		int noutlines = 0;
+		int ninterpolations = 0;
+		for (String name : cells.keySet()) {
+			Cell cell = (Cell) cells.get(name);
+			intern(name, strings, table);
+			intern(cell.getDefaultClass(), strings, table);
+			for (Integer frame : cell.getListOutlinesFrame()) {
+				intern(cell.getKeyframe(frame).getClassName(), strings, table);
+				noutlines++;
+			}
+			ninterpolations += cell.getInterpolations().size();
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename), 1 << 16));
+		try {
+			out.write(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(SCALE);
+			writeVarint(out, strings.size());
+			for (String s : strings) {
+				byte[] bytes = s.getBytes(UTF8);
+				writeVarint(out, bytes.length);
+				out.write(bytes);
+			}
+			writeVarint(out, classes.size());
+			for (String name : classes.keySet()) {
+				PixelClass klass = (PixelClass) classes.get(name);
+				writeVarint(out, index(name, table));
+				writeSigned(out, klass.hue);
+				writeSigned(out, klass.valueRegion);
+				writeSigned(out, klass.sizeInner);
+				writeSigned(out, klass.valueInner);
+				writeSigned(out, klass.sizeOuter);
+				writeSigned(out, klass.valueOuter);
+			}
+			writeVarint(out, cells.size());
+			for (String name : cells.keySet()) {
+				Cell cell = (Cell) cells.get(name);
+				writeVarint(out, index(name, table));
+				writeVarint(out, index(cell.getDefaultClass(), table));
+				writeSigned(out, cell.getHue());
+				out.writeByte((cell.isMobile() ? 1 : 0) | (cell.isMultiplePart() ? 2 : 0));
+			}
+			writeVarint(out, noutlines);
+			NodeBuffer nodes = new NodeBuffer();
+			for (String name : cells.keySet()) {
+				Cell cell = (Cell) cells.get(name);
+				for (Integer frame : cell.getListOutlinesFrame()) {
+					Outline outline = cell.getKeyframe(frame);
+					Polyline p = outline.getPolyline();
+					nodes.encode(p);
+					writeVarint(out, index(name, table));
+					writeVarint(out, index(outline.getClassName(), table));
+					writeSigned(out, frame.intValue());
+					writeVarint(out, p.size());
+					out.writeDouble(nodes.xg);
+					out.writeDouble(nodes.yg);
+					writeVarint(out, nodes.length);
+					out.write(nodes.bytes, 0, nodes.length);
+				}
+			}
+			writeVarint(out, ninterpolations);
+			for (String name : cells.keySet()) {
+				Cell cell = (Cell) cells.get(name);
+				for (Interpolation interpolation : cell.getInterpolations()) {
+					writeVarint(out, index(name, table));
+					writeSigned(out, interpolation.getFirst());
+					writeSigned(out, interpolation.getLast());
+					writeSigned(out, interpolation.getFrom());
+					writeSigned(out, interpolation.getTo());
+					out.writeDouble(interpolation.getTolerance());
+				}
+			}
+			if (lineage != null) {
+				writeVarint(out, lineage.getRoots());
+				writeVarint(out, lineage.getDivisions());
+				writeVarint(out, index(lineage.getDefaultClass(), table));
+			}
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static void intern(String s, ArrayList<String> strings, HashMap<String, Integer> table) {
+		if ((s != null) && !table.containsKey(s)) {
+			table.put(s, strings.size());
+			strings.add(s);
+		}
+	}
+
+	private static int index(String s, HashMap<String, Integer> table) {
+		return s == null ? 0 : table.get(s).intValue() + 1;
+	}
+
+	private static void writeVarint(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static void writeSigned(DataOutputStream out, int value) throws IOException {
+		writeVarint(out, (value << 1) ^ (value >> 31));
+	}
+
+	public static long quantize(double value) {
+		return Math.round(value * SCALE);
+	}
+
+	// Encodes the nodes of one outline; the center of gravity is computed on
+	// the quantized coordinates so it is the one of the decoded polyline.
+	private static class NodeBuffer {
+		private byte[] bytes = new byte[1024];
+		private int length;
+		private double xg;
+		private double yg;
+
+		public void encode(Polyline p) {
+			this.length = 0;
+			long px = 0;
+			long py = 0;
+			double sx = 0.0D;
+			double sy = 0.0D;
+			for (int i = 0; i < p.size(); i++) {
+				long qx = quantize(p.getX(i));
+				long qy = quantize(p.getY(i));
+				put(qx - px);
+				put(qy - py);
+				sx += (double) qx / SCALE;
+				sy += (double) qy / SCALE;
+				px = qx;
+				py = qy;
+			}
+			this.xg = sx / p.size();
+			this.yg = sy / p.size();
+		}
+
+		private void put(long delta) {
+			if (this.length + 10 > this.bytes.length) {
+				byte[] grow = new byte[2 * this.bytes.length];
+				System.arraycopy(this.bytes, 0, grow, 0, this.length);
+				this.bytes = grow;
+			}
+			long value = (delta << 1) ^ (delta >> 63);
+			while ((value & ~0x7FL) != 0L) {
+				this.bytes[(this.length++)] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			this.bytes[(this.length++)] = (byte) value;
+		}
+	}
+}
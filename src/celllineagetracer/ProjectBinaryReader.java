@@ -0,0 +1,301 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package celllineagetracer;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import additionaluserinterface.WalkBar;
+import celllineagetracer.cell.Cell;
+import celllineagetracer.cell.Cells;
+import celllineagetracer.cell.Lineage;
+import celllineagetracer.outline.Interpolation;
+import celllineagetracer.outline.Outline;
+import celllineagetracer.outline.OutlineLoader;
+import celllineagetracer.pixelclass.PixelClass;
+import celllineagetracer.pixelclass.PixelClasses;
+import celllineagetracer.polyline.Polyline;
+
+// Opens a binary project through read-only mappings of the file, in regions
+// of 1 GB so that the files over 2 GB can be mapped. Only the records are
+// read here, the nodes of an outline are decoded from the mapping when its
+// polyline is first used.
+public class ProjectBinaryReader {
+	private static final int REGION_SHIFT = 30;
+	private ProjectContent content;
+	private WalkBar walk;
+	private File file;
+	private FileChannel channel;
+	private ByteBuffer[] regions;
+	private long size;
+	private long position;
+
+	public ProjectBinaryReader(ProjectContent content) {
+		this.content = content;
+		this.walk = content.getWalkBar();
+	}
+
+	public static boolean isBinary(String filename) {
+		byte[] magic = new byte[ProjectBinary.MAGIC.length];
+		try {
+			FileInputStream stream = new FileInputStream(filename);
+			try {
+				if (stream.read(magic) != magic.length) {
+					return false;
+				}
+			}
+			finally {
+				stream.close();
+			}
+		}
+		catch (IOException ex) {
+			return false;
+		}
+		for (int i = 0; i < magic.length; i++) {
+			if (magic[i] != ProjectBinary.MAGIC[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// The mappings stay valid once the file is closed
+	public void read(String filename) throws IOException {
+		this.file = new File(filename).getAbsoluteFile();
+		FileInputStream stream = new FileInputStream(filename);
+		try {
+			this.channel = stream.getChannel();
+			this.size = this.channel.size();
+			this.regions = new ByteBuffer[(int) ((this.size + (1L << REGION_SHIFT) - 1) >>> REGION_SHIFT)];
+			for (int i = 0; i < this.regions.length; i++) {
+				long start = (long) i << REGION_SHIFT;
+				long length = Math.min(1L << REGION_SHIFT, this.size - start);
+				this.regions[i] = this.channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+			}
+			read();
+		}
+		finally {
+			stream.close();
+			this.channel = null;
+		}
+	}
+
+	private void read() throws IOException {
+		this.position = ProjectBinary.MAGIC.length;
+		int version = readInt();
+		int scale = readInt();
+		if ((version < 1) || (version > ProjectBinary.VERSION)) {
+			throw new IOException("Unknown version " + version);
+		}
+		String[] strings = new String[readVarint()];
+		for (int i = 0; i < strings.length; i++) {
+			byte[] bytes = new byte[readVarint()];
+			for (int k = 0; k < bytes.length; k++) {
+				bytes[k] = get(this.position++);
+			}
+			strings[i] = new String(bytes, ProjectBinary.UTF8);
+		}
+		int nclasses = readVarint();
+		for (int i = 0; i < nclasses; i++) {
+			String name = readString(strings);
+			int hue = readSigned();
+			PixelClass klass = new PixelClass(hue, readSigned());
+			int sizeInner = readSigned();
+			klass.setInnerContour(sizeInner, readSigned());
+			int sizeOuter = readSigned();
+			klass.setOuterContour(sizeOuter, readSigned());
+			this.content.putClass(name, klass);
+		}
+		int ncells = readVarint();
+		for (int i = 0; i < ncells; i++) {
+			String name = readString(strings);
+			String klass = readString(strings);
+			int hue = readSigned();
+			int flags = get(this.position++);
+			this.content.putCell(name, new Cell(klass, hue, (flags & 1) != 0, (flags & 2) != 0));
+		}
+		int noutlines = readVarint();
+		int percent = -1;
+		for (int i = 0; i < noutlines; i++) {
+			String name = readString(strings);
+			String klass = readString(strings);
+			int frame = readSigned();
+			int npoints = readVarint();
+			double xg = Double.longBitsToDouble(readLong());
+			double yg = Double.longBitsToDouble(readLong());
+			int length = readVarint();
+			OutlineLoader loader = createLoader(this.position, length, npoints, scale);
+			this.position += length;
+			this.content.putOutline(new Outline(loader, new Point2D.Double(xg, yg), Cells.getId(name), PixelClasses.getId(klass), frame));
+			if (this.walk != null) {
+				int p = (int) (100L * (i + 1) / noutlines);
+				if (p != percent) {
+					percent = p;
+					this.walk.progress("Loading " + (i + 1) + " outlines", p);
+				}
+			}
+		}
+		if (version >= 2) {
+			int ninterpolations = readVarint();
+			for (int i = 0; i < ninterpolations; i++) {
+				String name = readString(strings);
+				int first = readSigned();
+				int last = readSigned();
+				int from = readSigned();
+				int to = readSigned();
+				double tolerance = Double.longBitsToDouble(readLong());
+				this.content.putInterpolation(name, new Interpolation(first, last, from, to, tolerance));
+			}
+		}
+		if (this.position < this.size) {
+			int roots = readVarint();
+			int divisions = readVarint();
+			this.content.setLineage(new Lineage(roots, divisions, readString(strings)));
+		}
+	}
+
+	public String getPosition() {
+		return "byte " + this.position;
+	}
+
+	private byte get(long position) {
+		return this.regions[(int) (position >>> REGION_SHIFT)].get((int) (position & ((1L << REGION_SHIFT) - 1)));
+	}
+
+	// Big endian, as written by DataOutputStream
+	private long readLong() {
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (get(this.position++) & 0xFF);
+		}
+		return value;
+	}
+
+	private int readInt() {
+		int value = 0;
+		for (int i = 0; i < 4; i++) {
+			value = (value << 8) | (get(this.position++) & 0xFF);
+		}
+		return value;
+	}
+
+	// The nodes are read in the region that holds them, the few ones that
+	// cross the end of a region get their own mapping
+	private NodeLoader createLoader(long position, int length, int npoints, int scale) throws IOException {
+		ByteBuffer region = this.regions[(int) (position >>> REGION_SHIFT)];
+		int offset = (int) (position & ((1L << REGION_SHIFT) - 1));
+		if (offset + length <= region.limit()) {
+			return new NodeLoader(this.file, region, offset, npoints, scale);
+		}
+		return new NodeLoader(this.file, this.channel.map(FileChannel.MapMode.READ_ONLY, position, length), 0, npoints,
+				scale);
+	}
+
+	private int readVarint() {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = get(this.position++);
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	private int readSigned() {
+		int value = readVarint();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private String readString(String[] strings) {
+		int index = readVarint();
+		return index == 0 ? null : strings[(index - 1)];
+	}
+
+	// Only absolute reads, several outlines can be decoded concurrently
+	private static class NodeLoader implements OutlineLoader {
+		private File file;
+		private ByteBuffer buffer;
+		private int offset;
+		private int npoints;
+		private int scale;
+
+		public NodeLoader(File file, ByteBuffer buffer, int offset, int npoints, int scale) {
+			this.file = file;
+			this.buffer = buffer;
+			this.offset = offset;
+			this.npoints = npoints;
+			this.scale = scale;
+		}
+
+		public Polyline load() {
+			Polyline p = new Polyline();
+			p.ensureCapacity(this.npoints);
+			int pos = this.offset;
+			long qx = 0;
+			long qy = 0;
+			for (int i = 0; i < this.npoints; i++) {
+				long dx = 0;
+				int shift = 0;
+				byte b;
+				do {
+					b = this.buffer.get(pos++);
+					dx |= (long) (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				long dy = 0;
+				shift = 0;
+				do {
+					b = this.buffer.get(pos++);
+					dy |= (long) (b & 0x7F) << shift;
+					shift += 7;
+				} while (b < 0);
+				qx += (dx >>> 1) ^ -(dx & 1);
+				qy += (dy >>> 1) ^ -(dy & 1);
+				p.add((double) qx / this.scale, (double) qy / this.scale);
+			}
+			return p;
+		}
+
+		public File getFile() {
+			return this.file;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package celllineagetracer;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+import additionaluserinterface.WalkBar;
+import celllineagetracer.cell.Cell;
+import celllineagetracer.cell.Cells;
+import celllineagetracer.cell.Lineage;
+import celllineagetracer.outline.Interpolation;
+import celllineagetracer.outline.Interpolations;
+import celllineagetracer.outline.Outline;
+import celllineagetracer.pixelclass.PixelClass;
+
+// Classes, cells and outlines of a project file, collected by the readers
+// without touching the current project. The outlines are kept by cell id
+// and frame, so the records of a journal read after the project replace or
+// remove the ones of the project. The interpolations follow the same rules
+// as in a Cell: a keyframe added or removed in between splits them.
+public class ProjectContent {
+	private WalkBar walk;
+	private LinkedHashMap<String, PixelClass> classes = new LinkedHashMap<String, PixelClass>();
+	private LinkedHashMap<String, Cell> cells = new LinkedHashMap<String, Cell>();
+	private HashMap<Integer, HashMap<Integer, Outline>> outlines = new HashMap<Integer, HashMap<Integer, Outline>>();
+	private HashMap<Integer, Interpolations> interpolations = new HashMap<Integer, Interpolations>();
+	private Lineage lineage = null;
+	private int count = 0;
+	private boolean complete = false;
+	private boolean journaled = false;
+
+	public ProjectContent(WalkBar walk) {
+		this.walk = walk;
+	}
+
+	public WalkBar getWalkBar() {
+		return this.walk;
+	}
+
+	public void putClass(String name, PixelClass klass) {
+		this.classes.put(name, klass);
+	}
+
+	public void removeClass(String name) {
+		this.classes.remove(name);
+	}
+
+	public void putCell(String name, Cell cell) {
+		this.cells.put(name, cell);
+	}
+
+	public void removeCell(String name) {
+		this.cells.remove(name);
+		HashMap<Integer, Outline> frames = this.outlines.remove(Cells.names.findId(name));
+		if (frames != null) {
+			this.count -= frames.size();
+		}
+		this.interpolations.remove(Cells.names.findId(name));
+	}
+
+	public void setLineage(Lineage lineage) {
+		this.lineage = lineage;
+	}
+
+	public boolean hasCell(String name) {
+		return this.cells.containsKey(name);
+	}
+
+	// The outlines of an undeclared cell are ignored
+	public void putOutline(Outline outline) {
+		if (!this.cells.containsKey(outline.getCellName())) {
+			return;
+		}
+		HashMap<Integer, Outline> frames = this.outlines.get(outline.cell);
+		if (frames == null) {
+			frames = new HashMap<Integer, Outline>();
+			this.outlines.put(outline.cell, frames);
+		}
+		if (frames.put(outline.getFrame(), outline) == null) {
+			this.count++;
+		}
+		Interpolations interpolations = this.interpolations.get(outline.cell);
+		if (interpolations != null) {
+			interpolations.cut(outline.getFrame(), outline.getFrame());
+		}
+	}
+
+	public void removeOutline(String cell, int frame) {
+		int id = Cells.names.findId(cell);
+		HashMap<Integer, Outline> frames = this.outlines.get(id);
+		if ((frames != null) && (frames.remove(frame) != null)) {
+			this.count--;
+		}
+		Interpolations interpolations = this.interpolations.get(id);
+		if (interpolations != null) {
+			interpolations.cut(frame, frame);
+			interpolations.removeKeyframe(frame);
+		}
+	}
+
+	// The keyframes of the in-between frames are replaced
+	public void putInterpolation(String cell, Interpolation interpolation) {
+		if (!this.cells.containsKey(cell)) {
+			return;
+		}
+		int id = Cells.getId(cell);
+		HashMap<Integer, Outline> frames = this.outlines.get(id);
+		if (frames != null) {
+			for (int frame = interpolation.getFrom(); frame <= interpolation.getTo(); frame++) {
+				if (frames.remove(frame) != null) {
+					this.count--;
+				}
+			}
+		}
+		Interpolations interpolations = this.interpolations.get(id);
+		if (interpolations == null) {
+			interpolations = new Interpolations();
+			this.interpolations.put(id, interpolations);
+		}
+		interpolations.add(interpolation);
+	}
+
+	public int getCountOutlines() {
+		return this.count;
+	}
+
+	public void setComplete(boolean complete) {
+		this.complete = complete;
+	}
+
+	// True if the project file has been read up to its end
+	public boolean isComplete() {
+		return this.complete;
+	}
+
+	public void setJournaled(boolean journaled) {
+		this.journaled = journaled;
+	}
+
+	// True if a journal has been replayed over the project file
+	public boolean isJournaled() {
+		return this.journaled;
+	}
+
+	// Replaces the current project by the content read, to call from the
+	// event dispatch thread; the trajectories are computed once per cell.
+	public void install() {
+		Supervisor.clear();
+		Supervisor.lineage = this.lineage;
+		for (String name : this.classes.keySet()) {
+			Supervisor.classes.put(name, this.classes.get(name));
+		}
+		for (String name : this.cells.keySet()) {
+			Cell cell = this.cells.get(name);
+			Supervisor.cells.put(name, cell);
+			HashMap<Integer, Outline> frames = this.outlines.get(Cells.names.findId(name));
+			if (frames != null) {
+				for (Integer frame : frames.keySet()) {
+					cell.addOutline(frame.intValue(), frames.get(frame), false);
+				}
+			}
+			// An interpolation needs its two keyframes
+			Interpolations interpolations = this.interpolations.get(Cells.names.findId(name));
+			if ((interpolations != null) && (frames != null)) {
+				for (Interpolation interpolation : interpolations.values()) {
+					if (frames.containsKey(interpolation.getFirst()) && frames.containsKey(interpolation.getLast())) {
+						cell.interpolate(interpolation);
+					}
+				}
+			}
+			cell.computeTrajectory();
+		}
+		if (this.walk != null) {
+			this.walk.progress("Loaded " + this.count + " outlines", 100);
+		}
+	}
+}
@@ -0,0 +1,625 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package celllineagetracer;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import additionaluserinterface.WalkBar;
+import celllineagetracer.cell.Cell;
+import celllineagetracer.cell.Cells;
+import celllineagetracer.cell.Lineage;
+import celllineagetracer.outline.Interpolation;
+import celllineagetracer.outline.Outline;
+import celllineagetracer.outline.OutlineLoader;
+import celllineagetracer.pixelclass.PixelClass;
+import celllineagetracer.pixelclass.PixelClasses;
+import celllineagetracer.polyline.DrawParameters;
+import celllineagetracer.polyline.Polyline;
+
+// Reads a project file line by line from the bytes of a channel. The fields
+// are located by their offsets in the line and the numbers are parsed
+// directly from the bytes, only the names are decoded as strings.
+//
+// The file is split in chunks ending at a line break, parsed on all the
+// processors into lists of records. The lists are applied to the content in
+// the order of the file once all the chunks are parsed, so the result is the
+// same as a sequential read.
+public class ProjectReader {
+	private static final int BUFFER = 1 << 20;
+	private static final long CHUNK_MIN = 4L << 20;
+	private static final long CHUNK_MAX = 256L << 20;
+	private static final String ERROR = "";
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+			1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	private ProjectContent content;
+	private WalkBar walk;
+	private File file;
+	private Charset charset = Charset.defaultCharset();
+	private String error = null;
+	private long size = 0;
+	private AtomicLong done = new AtomicLong();
+	private AtomicInteger parsed = new AtomicInteger();
+	private int percent = -1;
+
+	public ProjectReader(ProjectContent content) {
+		this.content = content;
+		this.walk = content.getWalkBar();
+	}
+
+	public void read(String filename) throws IOException {
+		read(filename, false);
+	}
+
+	// In lazy mode the chunks are mapped and the outlines only keep the
+	// position of their nodes in the mapping, the nodes are parsed here for
+	// the center of gravity but not stored
+	public void read(String filename, boolean lazy) throws IOException {
+		this.error = null;
+		this.file = new File(filename).getAbsoluteFile();
+		this.done.set(0);
+		this.parsed.set(0);
+		this.percent = -1;
+		FileInputStream stream = new FileInputStream(filename);
+		try {
+			FileChannel channel = stream.getChannel();
+			this.size = channel.size();
+			ArrayList<Chunk> chunks = split(channel, lazy);
+			if (chunks.size() == 1) {
+				chunks.get(0).parse();
+			}
+			else if (chunks.size() > 1) {
+				ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+				try {
+					pool.invoke(new ChunkTask(chunks, 0, chunks.size()));
+				}
+				finally {
+					pool.shutdown();
+				}
+			}
+			int lines = 0;
+			for (Chunk chunk : chunks) {
+				for (Object record : chunk.records) {
+					if (!apply(record)) {
+						Record r = (Record) record;
+						this.error = (lines + r.frame) + ": " + r.value;
+						throw new IOException("Unable to read the line " + this.error);
+					}
+				}
+				if (chunk.error != null) {
+					this.error = (lines + chunk.lineNumber) + ": " + chunk.error;
+					throw new IOException("Unable to read the line " + this.error);
+				}
+				lines += chunk.lineNumber;
+			}
+		}
+		finally {
+			stream.close();
+		}
+	}
+
+	public String getCurrentLine() {
+		return this.error == null ? "0: " : this.error;
+	}
+
+	// One chunk per 4 processors at least, between 4 MB and 256 MB, moved to
+	// the end of the line where it falls
+	private ArrayList<Chunk> split(FileChannel channel, boolean lazy) throws IOException {
+		int cores = Runtime.getRuntime().availableProcessors();
+		long length = Math.min(CHUNK_MAX, Math.max(CHUNK_MIN, this.size / (4 * cores)));
+		ArrayList<Chunk> chunks = new ArrayList<Chunk>();
+		ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		long start = 0;
+		while (start < this.size) {
+			long end = Math.min(this.size, start + length);
+			while (end < this.size) {
+				buffer.clear();
+				int n = channel.read(buffer, end);
+				if (n <= 0) {
+					end = this.size;
+					break;
+				}
+				int i = 0;
+				while (i < n && buffer.get(i) != '\n' && buffer.get(i) != '\r') {
+					i++;
+				}
+				end += i;
+				if (i < n) {
+					end++;
+					break;
+				}
+			}
+			if (end - start > Integer.MAX_VALUE) {
+				throw new IOException("Line too long at " + start);
+			}
+			chunks.add(new Chunk(channel, start, (int) (end - start), lazy));
+			start = end;
+		}
+		return chunks;
+	}
+
+	// False for an outline in error of a declared cell
+	private boolean apply(Object record) {
+		if (record instanceof Outline) {
+			this.content.putOutline((Outline) record);
+			return true;
+		}
+		Record r = (Record) record;
+		if (r.type.equals(ERROR)) {
+			return !this.content.hasCell(r.name);
+		}
+		if (r.type.equals("CLASS")) {
+			this.content.putClass(r.name, (PixelClass) r.value);
+		}
+		else if (r.type.equals("CELL")) {
+			this.content.putCell(r.name, (Cell) r.value);
+		}
+		else if (r.type.equals("LINEAGE")) {
+			this.content.setLineage((Lineage) r.value);
+		}
+		else if (r.type.equals(ICLTFile.INTERPOLATE)) {
+			this.content.putInterpolation(r.name, (Interpolation) r.value);
+		}
+		else if (r.type.equals(Journal.DELETE)) {
+			this.content.removeOutline(r.name, r.frame);
+		}
+		else if (r.type.equals(Journal.REMOVE_CELL)) {
+			this.content.removeCell(r.name);
+		}
+		else if (r.type.equals(Journal.REMOVE_CLASS)) {
+			this.content.removeClass(r.name);
+		}
+		return true;
+	}
+
+	private void progress(int bytes) {
+		if (this.walk == null || this.size == 0) {
+			return;
+		}
+		int p = (int) (100 * this.done.addAndGet(bytes) / this.size);
+		synchronized (this) {
+			if (p > this.percent) {
+				this.percent = p;
+				this.walk.progress("Loading " + this.parsed.get() + " outlines", p);
+			}
+		}
+	}
+
+	// A line other than OUTLINE, applied to the content in the file order.
+	// An OUTLINE in error keeps its text and its line number as frame.
+	private static class Record {
+		private String type;
+		private String name;
+		private Object value;
+		private int frame;
+
+		public Record(String type, String name, Object value, int frame) {
+			this.type = type;
+			this.name = name;
+			this.value = value;
+			this.frame = frame;
+		}
+	}
+
+	private class ChunkTask extends RecursiveAction {
+		private ArrayList<Chunk> chunks;
+		private int from;
+		private int to;
+
+		public ChunkTask(ArrayList<Chunk> chunks, int from, int to) {
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (this.to - this.from == 1) {
+				this.chunks.get(this.from).parse();
+				return;
+			}
+			int middle = (this.from + this.to) / 2;
+			invokeAll(new ChunkTask(this.chunks, this.from, middle), new ChunkTask(this.chunks, middle, this.to));
+		}
+	}
+
+	// The lines of one chunk, with their own parsing buffers. The parsing
+	// stops at the first line in error, kept for the message.
+	private class Chunk {
+		private FileChannel channel;
+		private long position;
+		private int length;
+		private boolean lazy;
+		private ByteBuffer mapped = null;
+		private ArrayList<Object> records = new ArrayList<Object>();
+		private String error = null;
+		private byte[] line = new byte[1024];
+		private int size = 0;
+		private int lineNumber = 0;
+		private int lineStart = 0;
+		private int[] starts = new int[64];
+		private int[] ends = new int[64];
+		private int count = 0;
+
+		public Chunk(FileChannel channel, long position, int length, boolean lazy) {
+			this.channel = channel;
+			this.position = position;
+			this.length = length;
+			this.lazy = lazy;
+		}
+
+		public void parse() {
+			try {
+				if (this.lazy) {
+					this.mapped = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, this.length);
+				}
+				ByteBuffer buffer = ByteBuffer.allocate(Math.min(BUFFER, this.length));
+				byte[] bytes = buffer.array();
+				int done = 0;
+				while (done < this.length) {
+					buffer.clear();
+					buffer.limit(Math.min(bytes.length, this.length - done));
+					int n;
+					if (this.mapped != null) {
+						n = buffer.limit();
+						ByteBuffer view = this.mapped.duplicate();
+						view.position(done);
+						view.get(bytes, 0, n);
+					}
+					else {
+						n = this.channel.read(buffer, this.position + done);
+						if (n <= 0) {
+							break;
+						}
+					}
+					for (int i = 0; i < n; i++) {
+						byte b = bytes[i];
+						if (b == '\n' || b == '\r') {
+							if (this.size > 0) {
+								parseLine();
+							}
+							this.size = 0;
+						}
+						else {
+							if (this.size == 0) {
+								this.lineStart = done + i;
+							}
+							append(b);
+						}
+					}
+					done += n;
+					progress(n);
+				}
+				if (this.size > 0) {
+					parseLine();
+				}
+			}
+			catch (Exception ex) {
+				this.error = new String(this.line, 0, this.size, charset);
+			}
+			this.line = null;
+		}
+
+		private void append(byte b) {
+			if (this.size == this.line.length) {
+				byte[] grow = new byte[2 * this.line.length];
+				System.arraycopy(this.line, 0, grow, 0, this.size);
+				this.line = grow;
+			}
+			this.line[(this.size++)] = b;
+		}
+
+		// Splits as StringTokenizer(line, ","): the empty fields are skipped
+		private void split() {
+			this.count = 0;
+			int start = 0;
+			for (int i = 0; i <= this.size; i++) {
+				if (i == this.size || this.line[i] == ',') {
+					if (i > start) {
+						if (this.count == this.starts.length) {
+							int[] s = new int[2 * this.count];
+							int[] e = new int[2 * this.count];
+							System.arraycopy(this.starts, 0, s, 0, this.count);
+							System.arraycopy(this.ends, 0, e, 0, this.count);
+							this.starts = s;
+							this.ends = e;
+						}
+						this.starts[this.count] = start;
+						this.ends[this.count] = i;
+						this.count++;
+					}
+					start = i + 1;
+				}
+			}
+		}
+
+		// The outlines are parsed whatever their cell, the ones of an
+		// undeclared cell are dropped when the records are applied, with
+		// their errors if they miss coordinates
+		private void parseLine() {
+			this.lineNumber++;
+			split();
+			if (this.count == 0) {
+				return;
+			}
+			String type = getString(0);
+			int count = this.count - 1;
+			if (type.equals("CLASS")) {
+				String name = count > 0 ? getString(1) : "noname";
+				int hue = count > 1 ? getInt(2, 0) : 0;
+				int valueRegion = count > 1 ? getInt(3, 0) : 0;
+				int sizeInner = count > 3 ? getInt(4, 0) : 0;
+				int valueInner = count > 4 ? getInt(5, 0) : 0;
+				int sizeOuter = count > 5 ? getInt(6, 0) : 0;
+				int valueOuter = count > 6 ? getInt(7, 0) : 0;
+				PixelClass klass = new PixelClass(hue, valueRegion);
+				klass.setInnerContour(sizeInner, valueInner);
+				klass.setOuterContour(sizeOuter, valueOuter);
+				this.records.add(new Record(type, name, klass, 0));
+			}
+			if (type.equals("CELL")) {
+				String name = count > 0 ? getString(1) : "noname";
+				String klass = count > 1 ? getString(2) : "";
+				int hue = count > 1 ? getInt(3, 0) : 0;
+				boolean mo = count > 1 ? getString(4).equals("true") : true;
+				boolean mp = count > 1 ? getString(5).equals("true") : true;
+				this.records.add(new Record(type, name, new Cell(klass, hue, mo, mp), 0));
+			}
+			if (type.equals("LINEAGE")) {
+				int roots = count > 0 ? getInt(1, 1) : 1;
+				int divisions = count > 1 ? getInt(2, 0) : 0;
+				String klass = count > 2 ? getString(3) : "";
+				this.records.add(new Record(type, null, new Lineage(roots, divisions, klass), 0));
+			}
+			if (type.equals("OUTLINE")) {
+				String name = count > 0 ? getString(1) : "noname";
+				String klass = count > 1 ? getString(2) : "";
+				int frame = count > 2 ? getInt(3, 0) : 0;
+				int npoints = count > 3 ? getInt(4, 0) : 0;
+				if (count < 4 || 5 + 2 * npoints > this.count) {
+					String text = new String(this.line, 0, this.size, charset);
+					this.records.add(new Record(ERROR, name, text, this.lineNumber));
+				}
+				else if (this.mapped != null) {
+					double xg = 0.0D;
+					double yg = 0.0D;
+					for (int i = 0; i < npoints; i++) {
+						xg += getDouble(5 + 2 * i, 0.0D);
+						yg += getDouble(6 + 2 * i, 0.0D);
+					}
+					Point2D.Double cog = new Point2D.Double(xg / npoints, yg / npoints);
+					int from = this.lineStart + (npoints > 0 ? this.starts[5] : this.size);
+					int to = this.lineStart + this.size;
+					OutlineLoader loader = new TextLoader(ProjectReader.this.file, this.mapped, from, to, npoints);
+					this.records.add(new Outline(loader, cog, Cells.getId(name), PixelClasses.getId(klass), frame));
+				}
+				else {
+					Polyline p = new Polyline();
+					p.ensureCapacity(npoints);
+					for (int i = 0; i < npoints; i++) {
+						double x = getDouble(5 + 2 * i, 0.0D);
+						double y = getDouble(6 + 2 * i, 0.0D);
+						p.add(x, y);
+					}
+					this.records.add(new Outline(p, Cells.getId(name), PixelClasses.getId(klass), frame));
+				}
+				parsed.incrementAndGet();
+			}
+			if (type.equals(ICLTFile.INTERPOLATE)) {
+				int first = getInt(2, 0);
+				int last = getInt(3, 0);
+				int from = count > 4 ? getInt(4, first + 1) : first + 1;
+				int to = count > 4 ? getInt(5, last - 1) : last - 1;
+				double tolerance = count > 5 ? getDouble(6, DrawParameters.tolerance) : DrawParameters.tolerance;
+				Interpolation interpolation = new Interpolation(first, last, from, to, tolerance);
+				this.records.add(new Record(type, getString(1), interpolation, 0));
+			}
+			if (type.equals(Journal.DELETE)) {
+				this.records.add(new Record(type, getString(1), null, getInt(2, 0)));
+			}
+			if (type.equals(Journal.REMOVE_CELL)) {
+				this.records.add(new Record(type, getString(1), null, 0));
+			}
+			if (type.equals(Journal.REMOVE_CLASS)) {
+				this.records.add(new Record(type, getString(1), null, 0));
+			}
+		}
+
+		private String getString(int field) {
+			if (field >= this.count) {
+				throw new IndexOutOfBoundsException("Missing field " + field);
+			}
+			int from = this.starts[field];
+			int to = this.ends[field];
+			while (from < to && this.line[from] <= ' ') {
+				from++;
+			}
+			while (to > from && this.line[(to - 1)] <= ' ') {
+				to--;
+			}
+			return new String(this.line, from, to - from, charset);
+		}
+
+		private int getInt(int field, int def) {
+			if (field >= this.count) {
+				throw new IndexOutOfBoundsException("Missing field " + field);
+			}
+			return parseInt(this.line, this.starts[field], this.ends[field], def);
+		}
+
+		private double getDouble(int field, double def) {
+			if (field >= this.count) {
+				throw new IndexOutOfBoundsException("Missing field " + field);
+			}
+			return parseDouble(this.line, this.starts[field], this.ends[field], def);
+		}
+	}
+
+	// Same result as Tools.convertToInt on the trimmed field
+	public static int parseInt(byte[] b, int from, int to, int def) {
+		while (from < to && b[from] <= ' ') {
+			from++;
+		}
+		while (to > from && b[(to - 1)] <= ' ') {
+			to--;
+		}
+		int i = from;
+		boolean negative = false;
+		if (i < to && (b[i] == '-' || b[i] == '+')) {
+			negative = b[i] == '-';
+			i++;
+		}
+		if (i == to || to - i > 9) {
+			return Tools.convertToInt(new String(b, from, to - from), def);
+		}
+		int value = 0;
+		for (; i < to; i++) {
+			int d = b[i] - '0';
+			if (d < 0 || d > 9) {
+				return Tools.convertToInt(new String(b, from, to - from), def);
+			}
+			value = 10 * value + d;
+		}
+		return negative ? -value : value;
+	}
+
+	// Same result as Tools.convertToDouble on the trimmed field. The plain
+	// decimals with at most 15 significant digits are exact in a long and a
+	// power of ten, and rounded once by the division; the other forms go
+	// through Double.parseDouble.
+	public static double parseDouble(byte[] b, int from, int to, double def) {
+		while (from < to && b[from] <= ' ') {
+			from++;
+		}
+		while (to > from && b[(to - 1)] <= ' ') {
+			to--;
+		}
+		int i = from;
+		boolean negative = false;
+		if (i < to && (b[i] == '-' || b[i] == '+')) {
+			negative = b[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int decimals = 0;
+		boolean point = false;
+		boolean any = false;
+		for (; i < to; i++) {
+			int d = b[i] - '0';
+			if (d >= 0 && d <= 9) {
+				any = true;
+				if (mantissa == 0 && d == 0) {
+					if (point) {
+						decimals++;
+					}
+					continue;
+				}
+				mantissa = 10 * mantissa + d;
+				digits++;
+				if (point) {
+					decimals++;
+				}
+			}
+			else if (b[i] == '.' && !point) {
+				point = true;
+			}
+			else {
+				break;
+			}
+		}
+		if (i < to || !any || digits > 15 || decimals >= POW10.length) {
+			return Tools.convertToDouble(new String(b, from, to - from), def);
+		}
+		double value = mantissa / POW10[decimals];
+		return negative ? -value : value;
+	}
+
+	// Parses the coordinates of one OUTLINE row again from the mapping
+	private static class TextLoader implements OutlineLoader {
+		private File file;
+		private ByteBuffer buffer;
+		private int from;
+		private int to;
+		private int npoints;
+
+		public TextLoader(File file, ByteBuffer buffer, int from, int to, int npoints) {
+			this.file = file;
+			this.buffer = buffer;
+			this.from = from;
+			this.to = to;
+			this.npoints = npoints;
+		}
+
+		public Polyline load() {
+			byte[] bytes = new byte[this.to - this.from];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = this.buffer.get(this.from + i);
+			}
+			Polyline p = new Polyline();
+			p.ensureCapacity(this.npoints);
+			double[] xy = new double[2];
+			int k = 0;
+			int start = 0;
+			for (int i = 0; (i <= bytes.length) && (p.size() < this.npoints); i++) {
+				if ((i == bytes.length) || (bytes[i] == ',')) {
+					if (i > start) {
+						xy[(k++)] = parseDouble(bytes, start, i, 0.0D);
+						if (k == 2) {
+							p.add(xy[0], xy[1]);
+							k = 0;
+						}
+					}
+					start = i + 1;
+				}
+			}
+			return p;
+		}
+
+		public File getFile() {
+			return this.file;
+		}
+	}
+}
@@ -36,7 +36,10 @@ package celllineagetracer;
 
 import additionaluserinterface.GridPanel;
 import additionaluserinterface.Settings;
-import celllineagetracer.outline.Outline;
+import celllineagetracer.raster.ExportEngine;
+import celllineagetracer.raster.ExportSnapshot;
+import celllineagetracer.raster.FrameRenderer;
+import celllineagetracer.raster.Spans;
 import ij.ImagePlus;
 import ij.ImageStack;
 import ij.process.ByteProcessor;
@@ -118,70 +121,57 @@ public class Rendering implements ActionListener, Runnable {
 	public void colorize() {
 		ImagePlus imp = Supervisor.imp;
 
-		int f = imp.getFrame();
-		int c = imp.getChannel();
-		int s = imp.getSlice();
-		int nx = imp.getWidth();
-		int ny = imp.getHeight();
+		final int nx = imp.getWidth();
+		final int ny = imp.getHeight();
 		int nt = imp.getNFrames();
-		ImageStack stack = new ImageStack(nx, ny);
-		boolean cklass = this.rbClass.isSelected();
-		for (int frame = 1; frame <= nt; frame++) {
-			Supervisor.goFrame(frame);
-
-			ColorProcessor ip = new ColorProcessor(nx, ny);
-			ArrayList<Outline> outlines = Supervisor.getOutlinesAtFrame(frame);
-			byte[] r = new byte[nx * ny];
-			byte[] g = new byte[nx * ny];
-			byte[] b = new byte[nx * ny];
-			for (int i = 0; i < nx; i++) {
-				for (int j = 0; j < ny; j++) {
-					for (Outline outline : outlines) {
-						if (outline.contains(i, j)) {
-							Color color = cklass ? outline.getClassColor() : outline.getCellColor();
-							int index = j * nx + i;
-							r[index] = ((byte) color.getRed());
-							g[index] = ((byte) color.getGreen());
-							b[index] = ((byte) color.getBlue());
-						}
-					}
+		final boolean cklass = this.rbClass.isSelected();
+		final ColorProcessor[] ips = new ColorProcessor[nt];
+		ExportEngine.run(new ExportSnapshot(nt), new FrameRenderer() {
+			public void render(int frame, ArrayList<ExportSnapshot.Shape> shapes) {
+				ColorProcessor ip = new ColorProcessor(nx, ny);
+				byte[] r = new byte[nx * ny];
+				byte[] g = new byte[nx * ny];
+				byte[] b = new byte[nx * ny];
+				for (ExportSnapshot.Shape shape : shapes) {
+					Color color = cklass ? shape.classColor : shape.cellColor;
+					Spans spans = shape.fill(nx, ny);
+					spans.fill(r, nx, color.getRed());
+					spans.fill(g, nx, color.getGreen());
+					spans.fill(b, nx, color.getBlue());
 				}
+				ip.setRGB(r, g, b);
+				ips[frame - 1] = ip;
 			}
-			ip.setRGB(r, g, b);
+		});
+		ImageStack stack = new ImageStack(nx, ny);
+		for (ColorProcessor ip : ips) {
 			stack.addSlice(ip);
 		}
 		ImagePlus label = new ImagePlus("Color " + imp.getTitle(), stack);
 		label.show();
-		imp.setPosition(c, s, f);
 	}
 
 	public void binarize() {
 		ImagePlus imp = Supervisor.imp;
 
-		int f = imp.getFrame();
-		int c = imp.getChannel();
-		int s = imp.getSlice();
-		int nx = imp.getWidth();
-		int ny = imp.getHeight();
+		final int nx = imp.getWidth();
+		final int ny = imp.getHeight();
 		int nt = imp.getNFrames();
-		ImageStack stack = new ImageStack(nx, ny);
-		for (int frame = 1; frame <= nt; frame++) {
-			Supervisor.goFrame(frame);
-			ImageProcessor ip = new ByteProcessor(nx, ny);
-			ArrayList<Outline> shapes = Supervisor.getOutlinesAtFrame(frame);
-			for (int i = 0; i < nx; i++) {
-				for (int j = 0; j < ny; j++) {
-					for (Outline shape : shapes) {
-						if (shape.contains(i, j)) {
-							ip.putPixelValue(i, j, 255.0D);
-						}
-					}
+		final ImageProcessor[] ips = new ImageProcessor[nt];
+		ExportEngine.run(new ExportSnapshot(nt), new FrameRenderer() {
+			public void render(int frame, ArrayList<ExportSnapshot.Shape> shapes) {
+				ImageProcessor ip = new ByteProcessor(nx, ny);
+				for (ExportSnapshot.Shape shape : shapes) {
+					shape.fill(nx, ny).fill((byte[]) ip.getPixels(), nx, 255);
 				}
+				ips[frame - 1] = ip;
 			}
+		});
+		ImageStack stack = new ImageStack(nx, ny);
+		for (ImageProcessor ip : ips) {
 			stack.addSlice(ip);
 		}
 		ImagePlus label = new ImagePlus("Label " + imp.getTitle(), stack);
 		label.show();
-		imp.setPosition(c, s, f);
 	}
 }
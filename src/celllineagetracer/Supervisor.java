@@ -39,28 +39,37 @@ import celllineagetracer.canvas.ICLTWindow;
 import celllineagetracer.cell.Cell;
 import celllineagetracer.cell.Cells;
 import celllineagetracer.cell.CellsTable;
+import celllineagetracer.cell.Lineage;
+import celllineagetracer.outline.FrameIndex;
+import celllineagetracer.outline.Interpolation;
 import celllineagetracer.outline.Outline;
+import celllineagetracer.outline.OutlineCache;
 import celllineagetracer.outline.OutlinesTable;
 import celllineagetracer.pixelclass.PixelClass;
 import celllineagetracer.pixelclass.PixelClasses;
 import celllineagetracer.pixelclass.PixelClassesTable;
 import celllineagetracer.polyline.DrawParameters;
-import celllineagetracer.polyline.Node;
 import celllineagetracer.polyline.Polyline;
 import ij.ImagePlus;
-import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.Set;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 public class Supervisor implements MouseListener, KeyListener {
 	public static Cells cells;
 	public static PixelClasses classes;
+	public static Lineage lineage = null;
+	public static FrameIndex index = new FrameIndex();
+	public static Journal journal = null;
+	public static OutlineCache cache = new OutlineCache();
 	public static ImagePlus imp;
 	private ICLTWindow window;
 	private ICLTCanvas canvas;
@@ -68,9 +77,18 @@ public class Supervisor implements MouseListener, KeyListener {
 	private OutlinesTable tableOutlines;
 	private PixelClassesTable tablePixelClasses;
 	private Outline selected = null;
+	private ArrayList<ModelListener> listeners = new ArrayList<ModelListener>();
+	private int pending = 0;
+	// The outlines changed since the last delivery, null when the views
+	// have to be rebuilt
+	private IdentityHashMap<Outline, Boolean> touched = new IdentityHashMap<Outline, Boolean>();
+	// Beyond this count of changed outlines, the tables are rebuilt at once
+	private static final int MAX_TOUCHED = 256;
 
 	public Supervisor(ImagePlus imp) {
 		Supervisor.imp = imp;
+		index = new FrameIndex();
+		cache.clear();
 		cells = new Cells();
 		classes = new PixelClasses();
 		this.tableCells = new CellsTable();
@@ -80,14 +98,21 @@ public class Supervisor implements MouseListener, KeyListener {
 		this.tableOutlines.addKeyListener(this);
 		this.tablePixelClasses.addMouseListener(this);
 		this.tableCells.addMouseListener(this);
+		addModelListener(new ModelListener() {
+			public void modelChanged(int changes, Collection<Outline> outlines) {
+				refresh(changes, outlines);
+			}
+		});
 	}
 
 	public static void clear() {
+		cache.clear();
 		classes.clear();
 		for (String cell : cells.keySet()) {
 			((Cell) cells.get(cell)).removeAllOutlines();
 		}
 		cells.clear();
+		lineage = null;
 	}
 
 	public void attachWindow(ICLTWindow window, ICLTCanvas canvas) {
@@ -101,40 +126,64 @@ public class Supervisor implements MouseListener, KeyListener {
 			return null;
 		}
 		Cell cell = (Cell) cells.get(cellName);
+		if ((cell == null) && (lineage != null) && lineage.contains(cellName)) {
+			cell = lineage.createCell();
+			cells.put(cellName, cell);
+			if (journal != null) {
+				journal.putCell(cellName, cell);
+			}
+			fireChanged(ModelListener.CELLS);
+		}
 		if (cell == null) {
 			return null;
 		}
 		String klassName = this.window.getPixelClass();
 
-		Polyline p = new Polyline();
-		for (Node node : polyline) {
-			p.add(node);
-		}
-		Outline outline = new Outline(p, cellName, klassName, frame);
+		Outline outline = new Outline(polyline.copy(), Cells.getId(cellName), PixelClasses.getId(klassName), frame);
+		Outline previous = cell.getKeyframe(frame);
 		cell.addOutline(frame, outline);
-		updateAll(outline, true);
+		if (journal != null) {
+			journal.putOutline(outline);
+		}
+		if (previous != null) {
+			fireChanged(previous);
+		}
+		fireChanged(outline);
+		select(outline);
 		return outline;
 	}
 
 	public void deleteOutline(Outline outline) {
 		if (outline != null) {
-			Cell cell = (Cell) cells.get(outline.cell);
+			Cell cell = cells.getCell(outline.cell);
 			if (cell != null) {
 				cell.removeOutline(new Integer(outline.getFrame()).intValue());
+				if (journal != null) {
+					journal.deleteOutline(outline);
+				}
 			}
+			fireChanged(outline);
 		}
-		updateAll(null, true);
+		select(null);
 	}
 
 	public void interpolateOutline(Outline start) {
 		if (start == null) {
 			return;
 		}
-		Cell cell = (Cell) cells.get(start.cell);
+		Cell cell = cells.getCell(start.cell);
+		// An in-between outline starts the interpolation as a keyframe
+		if (start.isInterpolated()) {
+			start.materialize();
+			if (journal != null) {
+				journal.putOutline(start);
+			}
+			fireChanged(start);
+		}
 		int next = start.getFrame() + 1;
 		Outline connect = null;
 		for (Integer frame : cell.getListOutlinesFrame()) {
-			Outline outline = cell.getOutline(frame);
+			Outline outline = cell.getKeyframe(frame);
 			if (outline.getFrame() > next) {
 				next = outline.getFrame();
 				connect = outline;
@@ -143,8 +192,7 @@ public class Supervisor implements MouseListener, KeyListener {
 		if ((start != null) && (connect != null)) {
 			int count = 0;
 			for (int f = start.getFrame() + 1; f < connect.getFrame(); f++) {
-				Outline outline = getOutline(f, start.cell);
-				if (outline == null) {
+				if (!cell.hasOutline(f)) {
 					count++;
 				}
 			}
@@ -152,48 +200,42 @@ public class Supervisor implements MouseListener, KeyListener {
 				interpolatate(cell, start, connect);
 			}
 		}
-		updateAll(null, true);
+		select(null);
 	}
 
+	// Only the keyframes and the frames in between are stored, the journal
+	// records one row for the whole interpolation
 	private void interpolatate(Cell cell, Outline start, Outline last) {
-		Polyline a = start.getPolyline();
-		Polyline b = last.getPolyline();
-		Polyline ra = a.resample(100);
-		Polyline rb = b.resample(100);
-		ra.makeClockwise();
-		rb.makeClockwise();
-		double tol = DrawParameters.tolerance;
-		int t1 = start.getFrame();
-		int t2 = last.getFrame();
-		int nf = t2 - t1;
-		for (int t = 1; t < nf; t++) {
-			Polyline d = new Polyline();
-			for (int i = 0; i < Math.min(ra.size(), rb.size()); i++) {
-				double x = ((nf - t) * ((Node) ra.get(i)).x + t * ((Node) rb.get(i)).x) / nf;
-				double y = ((nf - t) * ((Node) ra.get(i)).y + t * ((Node) rb.get(i)).y) / nf;
-				d.add(new Node(x, y));
-			}
-			Outline n = new Outline(d.simplify(tol), start.cell, start.klass, t + t1);
-			cell.addOutline(t + t1, n);
+		Interpolation interpolation = new Interpolation(start.getFrame(), last.getFrame(), DrawParameters.tolerance);
+		for (Outline previous : cell.interpolate(interpolation)) {
+			fireChanged(previous);
+		}
+		if (journal != null) {
+			journal.putInterpolation(start.getCellName(), interpolation);
 		}
+		fireChanged(start);
 	}
 
 	public void propagateOutline(Outline start) {
 		if (start == null) {
 			return;
 		}
-		Cell cell = (Cell) cells.get(start.cell);
+		Cell cell = cells.getCell(start.cell);
 		if (cell == null) {
 			return;
 		}
 		for (int f = start.getFrame() + 1; f <= imp.getNFrames(); f++) {
-			if (cell.getOutline(Integer.valueOf(f)) == null) {
+			if (!cell.hasOutline(f)) {
 				Outline outline = start.duplicate();
 				outline.setFrame(f);
 				cell.addOutline(f, outline);
+				if (journal != null) {
+					journal.putOutline(outline);
+				}
+				fireChanged(outline);
 			}
 		}
-		updateAll(null, true);
+		select(null);
 	}
 
 	public void deleteCell(String name) {
@@ -217,8 +259,12 @@ public class Supervisor implements MouseListener, KeyListener {
 		}
 		if (flag) {
 			cells.remove(name);
+			if (journal != null) {
+				journal.removeCell(name);
+			}
 		}
-		updateAll(null, true);
+		fireChanged(ModelListener.CELLS | ModelListener.OUTLINES);
+		select(null);
 	}
 
 	public Cell getCell(String name) {
@@ -243,6 +289,7 @@ public class Supervisor implements MouseListener, KeyListener {
 			return;
 		}
 		int count = 0;
+		int id = PixelClasses.getId(name);
 
 		Iterator<Integer> localIterator2;
 		for (Iterator<String> localIterator1 = cells.keySet().iterator(); localIterator1.hasNext(); localIterator2.hasNext()) {
@@ -250,7 +297,7 @@ public class Supervisor implements MouseListener, KeyListener {
 			Cell c = (Cell) cells.get(cell);
 			localIterator2 = c.getListOutlinesFrame().iterator(); // continue;
 			Integer frame = (Integer) localIterator2.next();
-			if (c.getOutline(frame).klass.equals(name)) {
+			if (c.getOutline(frame).klass == id) {
 				count++;
 			}
 		}
@@ -264,31 +311,30 @@ public class Supervisor implements MouseListener, KeyListener {
 		}
 		if (flag) {
 			classes.remove(name);
+			if (journal != null) {
+				journal.removeClass(name);
+			}
 			Iterator<Integer> localIterator3;
 			for (String ncell : cells.keySet()) {
 				Cell c = (Cell) cells.get(ncell);
 				localIterator3 = c.getListOutlinesFrame().iterator(); // continue;
 				Integer frame = (Integer) localIterator3.next();
-				if (c.getOutline(frame).klass.equals(name)) {
-					c.getOutline(frame).klass = "";
+				if (c.getOutline(frame).klass == id) {
+					c.getOutline(frame).klass = PixelClasses.getId("");
+					if (journal != null) {
+						journal.putOutline(c.getOutline(frame));
+					}
+					fireChanged(c.getOutline(frame));
 				}
 			}
 		}
-		updateAll(null, true);
+		fireChanged(ModelListener.CLASSES);
+		select(null);
 	}
 
 	public static ArrayList<Outline> getOutlinesAtFrame(int frame) {
-		ArrayList<Outline> outlines = new ArrayList<Outline>();
-		for (String name : cells.keySet()) {
-			Cell cell = (Cell) cells.get(name);
-			Set<Integer> oc = cell.getListOutlinesFrame();
-			for (Integer f : oc) {
-				if (f.intValue() == frame) {
-					outlines.add(cell.getOutline(f));
-				}
-			}
-		}
-		return outlines;
+		cache.setFrame(frame);
+		return index.getOutlines(frame);
 	}
 
 	/*
@@ -308,7 +354,7 @@ public class Supervisor implements MouseListener, KeyListener {
 
 	public static Outline getOutline(int frame, String cell) {
 		Cell c = (Cell) cells.get(cell);
-		if (cell != null) {
+		if (c != null) {
 			return c.getOutline(Integer.valueOf(frame));
 		}
 		return null;
@@ -338,43 +384,139 @@ public class Supervisor implements MouseListener, KeyListener {
 		return this.tablePixelClasses;
 	}
 
-	public void updateAll(Outline selected, boolean updateTable) {
-		this.tableCells.update();
-		this.tableOutlines.update();
-		this.tablePixelClasses.update();
+	public void addModelListener(ModelListener listener) {
+		this.listeners.add(listener);
+	}
+
+	public void removeModelListener(ModelListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	// The changes are accumulated until the event dispatch thread is free,
+	// a burst of edits is then delivered as one refresh of the views. A change
+	// of the outlines fired without the outline rebuilds the views.
+	public void fireChanged(int changes) {
+		synchronized (this.listeners) {
+			boolean scheduled = this.pending != 0;
+			this.pending |= changes;
+			if ((changes & ModelListener.OUTLINES) != 0) {
+				this.touched = null;
+			}
+			if (scheduled) {
+				return;
+			}
+		}
+		schedule();
+	}
+
+	// The outline has been added, removed or edited, only its row is updated
+	public void fireChanged(Outline outline) {
+		synchronized (this.listeners) {
+			boolean scheduled = this.pending != 0;
+			this.pending |= ModelListener.OUTLINES;
+			if (this.touched != null) {
+				this.touched.put(outline, Boolean.TRUE);
+				if (this.touched.size() > MAX_TOUCHED) {
+					this.touched = null;
+				}
+			}
+			if (scheduled) {
+				return;
+			}
+		}
+		schedule();
+	}
+
+	private void schedule() {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				flush();
+			}
+		});
+	}
 
-		updateTable = true;
+	// Delivers the pending changes now, for the callers which need the views
+	// up to date before going on
+	public void flush() {
+		int changes;
+		Collection<Outline> outlines;
+		synchronized (this.listeners) {
+			changes = this.pending;
+			outlines = this.touched == null ? null : this.touched.keySet();
+			this.pending = 0;
+			this.touched = new IdentityHashMap<Outline, Boolean>();
+		}
+		if (changes == 0) {
+			return;
+		}
+		for (ModelListener listener : new ArrayList<ModelListener>(this.listeners)) {
+			listener.modelChanged(changes, outlines);
+		}
+	}
 
+	// The image moves at once to the frame of the selected outline, the views
+	// follow with the next refresh
+	public void select(Outline selected) {
 		this.selected = selected;
 		if (selected != null) {
 			int channel = imp.getChannel();
 			int slice = imp.getSlice();
 			imp.setPosition(channel, slice, selected.getFrame());
 		}
-		if (this.window != null) {
-			this.window.updateList();
-			this.window.updateBar();
-		}
-		if ((selected != null) && (this.window != null)) {
-			if (selected.cell != null) {
-				this.window.setCell(selected.cell);
-			}
-			if (selected.klass != null) {
-				this.window.setPixelClass(selected.klass);
+		fireChanged(ModelListener.SELECTION);
+	}
+
+	private void refresh(int changes, Collection<Outline> changed) {
+		boolean cells = (changes & ModelListener.CELLS) != 0;
+		boolean classes = (changes & ModelListener.CLASSES) != 0;
+		boolean outlines = (changes & ModelListener.OUTLINES) != 0;
+		boolean selection = (changes & ModelListener.SELECTION) != 0;
+		boolean rebuild = outlines && (changed == null);
+
+		// The information of a cell includes its count of outlines
+		HashSet<String> names = new HashSet<String>();
+		if (outlines && !rebuild) {
+			for (Outline outline : changed) {
+				names.add(outline.getCellName());
 			}
 		}
-		this.canvas.repaint();
-		if ((updateTable) && (selected != null)) {
-			for (int i = 0; i < this.tableOutlines.getRowCount(); i++) {
-				int frame = Tools.convertToInt((String) this.tableOutlines.getValueAt(i, 2), -1);
-				String cell = (String) this.tableOutlines.getValueAt(i, 0);
-				if ((selected.getFrame() == frame) && (selected.cell.equals(cell))) {
-					this.tableOutlines.setRowSelectionInterval(i, i);
-					Rectangle rect = new Rectangle(this.tableOutlines.getCellRect(i, 0, true));
-					this.tableOutlines.scrollRectToVisible(rect);
-					return;
+		if (cells || rebuild) {
+			this.tableCells.update();
+		}
+		else if (outlines) {
+			this.tableCells.update(names);
+		}
+		if (rebuild) {
+			this.tableOutlines.update();
+		}
+		else if (outlines) {
+			this.tableOutlines.update(changed);
+		}
+		if (classes) {
+			this.tablePixelClasses.update();
+		}
+		if (this.window != null) {
+			if (cells || classes) {
+				this.window.updateList();
+			}
+			if ((this.selected != null) && selection) {
+				if (this.selected.cell >= 0) {
+					this.window.setCell(this.selected.getCellName());
+				}
+				if (this.selected.klass >= 0) {
+					this.window.setPixelClass(this.selected.getClassName());
 				}
 			}
+			if (cells || rebuild || selection || names.contains(this.window.getCell())) {
+				this.window.updateBar();
+			}
+		}
+		if (this.canvas != null) {
+			this.canvas.repaint();
+		}
+		// A rebuilt or removed row loses its selection
+		if ((this.selected != null) && (this.tableOutlines.getOutline() != this.selected)) {
+			this.tableOutlines.select(this.selected);
 		}
 	}
 
@@ -396,7 +538,7 @@ public class Supervisor implements MouseListener, KeyListener {
 			try {
 				Outline outline = this.tableOutlines.getOutline();
 				if (outline != null) {
-					updateAll(outline, false);
+					select(outline);
 				}
 			}
 			catch (Exception localException) {
@@ -427,7 +569,7 @@ public class Supervisor implements MouseListener, KeyListener {
 			try {
 				Outline outline = this.tableOutlines.getOutline();
 				if (outline != null) {
-					updateAll(outline, false);
+					select(outline);
 				}
 			}
 			catch (Exception localException) {
@@ -67,6 +67,31 @@ public class Tools
     return i;
   }
   
+  public static StringBuilder appendFixed(StringBuilder sb, double value, int decimals)
+  {
+    if ((Double.isNaN(value)) || (Double.isInfinite(value)) || (Math.abs(value) >= 1.0E15D) || (decimals > 9)) {
+      return sb.append(value);
+    }
+    long scale = 1L;
+    for (int i = 0; i < decimals; i++) {
+      scale *= 10L;
+    }
+    long v = Math.round(Math.abs(value) * scale);
+    if ((value < 0.0D) && (v != 0L)) {
+      sb.append('-');
+    }
+    sb.append(v / scale);
+    if (decimals > 0)
+    {
+      sb.append('.');
+      long frac = v % scale;
+      for (long p = scale / 10L; p > 0L; p /= 10L) {
+        sb.append((char)(48 + (int)(frac / p % 10L)));
+      }
+    }
+    return sb;
+  }
+  
   public static int convertToInt(String a, int def)
   {
     if (a == null) {
@@ -45,7 +45,6 @@ import javax.swing.JButton;
 
 import celllineagetracer.Supervisor;
 import celllineagetracer.cell.Cell;
-import celllineagetracer.outline.Outline;
 import ij.ImagePlus;
 
 public class BarFrames extends JButton implements MouseListener {
@@ -84,14 +83,14 @@ public class BarFrames extends JButton implements MouseListener {
 			int r = (int) Math.round(right);
 			g.setColor(Color.GRAY);
 			g.drawRect(l, 0, r, h);
-			Color color = ((Cell) Supervisor.cells.get(this.cell)).getColor();
-			Outline outline = Supervisor.getOutline(frame, this.cell);
-			if (outline == null) {
+			// The in-between outlines are not computed to draw the bar
+			Cell cell = (Cell) Supervisor.cells.get(this.cell);
+			if ((cell == null) || !cell.hasOutline(frame)) {
 				g.setColor(Color.WHITE);
 				g.fillRect(l, 0, r, h);
 			}
 			else {
-				g.setColor(color);
+				g.setColor(cell.getColor());
 				g.fillRect(l, 0, r, h);
 			}
 			left += step;
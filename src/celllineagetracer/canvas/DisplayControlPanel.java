@@ -77,6 +77,7 @@ public class DisplayControlPanel extends JPanel implements ActionListener, Chang
 	private JLabel lblText = new JLabel("Font");
 	private JComboBox<String> cmbSelected = new JComboBox<String>(Constants.colors);
 	private SpinnerInteger spnSelected = new SpinnerInteger(1, 0, 100, 1);
+	private SpinnerInteger spnMemory = new SpinnerInteger(512, 16, 1000000, 64);
 	private JComboBox<String> cmbText = new JComboBox<String>(
 			new String[] { "Print object name", "Print class name", "Print frame" });
 	private Supervisor supervisor;
@@ -125,6 +126,9 @@ public class DisplayControlPanel extends JPanel implements ActionListener, Chang
 		pnDisplay.place(10, 3, new JLabel("Stroke"));
 		pnDisplay.place(10, 4, this.spnSelected);
 
+		pnDisplay.place(11, 0, 3, 1, new JLabel("Memory for the outlines (MB)"));
+		pnDisplay.place(11, 4, this.spnMemory);
+
 		setLayout(new BoxLayout(this, 3));
 		add(pnDisplay);
 
@@ -153,8 +157,10 @@ public class DisplayControlPanel extends JPanel implements ActionListener, Chang
 
 		settings.record("cmbSelected", this.cmbSelected, "Red");
 		settings.record("spnSelected", this.spnSelected, "2");
+		settings.record("spnMemory", this.spnMemory, "512");
 
 		this.spnSelected.addChangeListener(this);
+		this.spnMemory.addChangeListener(this);
 		this.cmbSelected.addActionListener(this);
 
 		this.chkTrack.addActionListener(this);
@@ -228,6 +234,7 @@ public class DisplayControlPanel extends JPanel implements ActionListener, Chang
 		canvas.trackBackward = (this.chkTrack.isSelected() ? 100000 : 0);
 
 		canvas.textType = this.cmbText.getSelectedIndex();
+		Supervisor.cache.setBudget(this.spnMemory.get());
 		canvas.repaint();
 		updateInterface();
 	}
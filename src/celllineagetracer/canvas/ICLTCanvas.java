@@ -51,7 +51,7 @@ import java.util.ArrayList;
 import celllineagetracer.Supervisor;
 import celllineagetracer.cell.Cell;
 import celllineagetracer.cell.CellDialog;
-import celllineagetracer.cell.TrajectoryPoint;
+import celllineagetracer.cell.Trajectory;
 import celllineagetracer.outline.Outline;
 import celllineagetracer.polyline.DrawParameters;
 import celllineagetracer.polyline.Node;
@@ -72,6 +72,7 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 	private Polyline free = null;
 	private EditableShapePolyline shape = null;
 	private int selectedNode = -1;
+	private boolean dragged = false;
 	private Point cursor = null;
 	public ImagePlus imp;
 	private PathType pathType = PathType.FREE;
@@ -190,8 +191,8 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 			int s = this.selectedStroke;
 			Polyline polyline = selected.getPolyline();
 			polyline.drawPolygon(g2, cs, s, this);
-			for (Node node : polyline) {
-				g2.drawOval(screenXD(node.x - 2 * s), screenYD(node.y - 2 * s), 4 * s + 1, 4 * s + 1);
+			for (int i = 0; i < polyline.size(); i++) {
+				g2.drawOval(screenXD(polyline.getX(i) - 2 * s), screenYD(polyline.getY(i) - 2 * s), 4 * s + 1, 4 * s + 1);
 			}
 			if (this.selectedNode >= 0) {
 				Node node = (Node) polyline.get(this.selectedNode);
@@ -203,31 +204,30 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 	private void drawTrajectory(Graphics2D g2, int minTrack, int maxTrack) {
 		for (String name : Supervisor.cells.keySet()) {
 			Cell cell = (Cell) Supervisor.cells.get(name);
-			ArrayList<TrajectoryPoint> traj = cell.getTrajectory();
-			if (traj == null) {
-				break;
-			}
+			Trajectory traj = cell.getTrajectory();
 			if (traj.size() < 2) {
 				break;
 			}
 			g2.setStroke(new BasicStroke(this.trackThickness));
-			TrajectoryPoint prev = null;
-			for (TrajectoryPoint curr : traj) {
-				if ((curr.frame >= minTrack) && (curr.frame <= maxTrack)) {
-					if (prev == null) {
-						g2.setColor(getDisplayColor(cell.getOutline(Integer.valueOf(curr.frame)), this.trackColorCode));
-					}
-					else {
-						g2.drawLine(screenXD(prev.x), screenYD(prev.y), screenXD(curr.x), screenYD(curr.y));
-					}
-					prev = curr;
+			int from = traj.indexOf(minTrack);
+			if (from < 0) {
+				from = -from - 1;
+			}
+			int n = traj.size();
+			for (int i = from; (i < n) && (traj.getFrame(i) <= maxTrack); i++) {
+				if (i == from) {
+					g2.setColor(getDisplayColor(cell.getOutline(Integer.valueOf(traj.getFrame(i))), this.trackColorCode));
+				}
+				else {
+					g2.drawLine(screenXD(traj.getX(i - 1)), screenYD(traj.getY(i - 1)), screenXD(traj.getX(i)),
+							screenYD(traj.getY(i)));
 				}
 			}
 		}
 	}
 
 	public void unselect() {
-		this.supervisor.updateAll(null, true);
+		this.supervisor.select(null);
 		this.selectedNode = -1;
 		cancel();
 	}
@@ -236,7 +236,7 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 		this.cursor = null;
 		this.free = null;
 		this.shape = null;
-		this.supervisor.updateAll(null, true);
+		this.supervisor.select(null);
 
 		setCursor(new Cursor(0));
 		repaint();
@@ -266,8 +266,9 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 		Outline selected = this.supervisor.getSelected();
 		if (this.cursor == null) {
 			if (selected != null) {
-				for (int i = 0; i < selected.getPolyline().size(); i++) {
-					if (((Node) selected.getPolyline().get(i)).distance(xm, ym) < 14.0D) {
+				Polyline p = selected.getPolyline();
+				for (int i = 0; i < p.size(); i++) {
+					if (Point2D.distance(p.getX(i), p.getY(i), xm, ym) < 14.0D) {
 						this.selectedNode = i;
 					}
 				}
@@ -278,7 +279,11 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 				int modifiers = e.getModifiers();
 				if ((modifiers & 0x2) == 2) {
 					if (p.size() > 3) {
+						p = selected.getEditablePolyline();
 						p.remove(this.selectedNode);
+						selected.touch();
+						updateTrajectory(selected);
+						journal(selected);
 					}
 					this.selectedNode = -1;
 				}
@@ -287,7 +292,11 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 					curr = (Node) p.get(this.selectedNode);
 					Node prev = (Node) p.get(this.selectedNode == 0 ? np - 1 : this.selectedNode - 1);
 					if (curr.distance(prev) > 5.0D) {
+						p = selected.getEditablePolyline();
 						p.add(this.selectedNode, new Node(0.5D * (curr.x + prev.x), 0.5D * (curr.y + prev.y)));
+						selected.touch();
+						updateTrajectory(selected);
+						journal(selected);
 					}
 					this.selectedNode = -1;
 				}
@@ -302,12 +311,12 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 				}
 			}
 			if (inside != null) {
-				this.supervisor.updateAll(inside, true);
+				this.supervisor.select(inside);
 				repaint();
 				return;
 			}
 			if (selected != null) {
-				this.supervisor.updateAll(null, true);
+				this.supervisor.select(null);
 				repaint();
 				return;
 			}
@@ -374,30 +383,31 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 		if ((selected != null) && (this.selectedNode >= 0)) {
 			int xm = offScreenX(e.getX());
 			int ym = offScreenY(e.getY());
-			Polyline contour = selected.getPolyline();
+			Polyline contour = selected.getEditablePolyline();
 			int modifiers = e.getModifiers();
 			if ((modifiers & 0x1) == 1) {
-				double dx = xm - ((Node) contour.get(this.selectedNode)).x;
-				double dy = ym - ((Node) contour.get(this.selectedNode)).y;
+				double dx = xm - contour.getX(this.selectedNode);
+				double dy = ym - contour.getY(this.selectedNode);
 				contour.translate(dx, dy);
-				((Cell) Supervisor.cells.get(selected.cell)).computeTrajectory();
+				selected.touch();
+				this.dragged = true;
+				updateTrajectory(selected);
 			}
 			else {
 				int ns = contour.size() - 1;
 				if ((ns > 1) && ((this.selectedNode == 0) || (this.selectedNode == ns))) {
 					double d = ((Node) contour.get(0)).distance((Point2D) contour.get(ns));
 					if (d < 1.0D) {
-						((Node) contour.get(0)).x = xm;
-						((Node) contour.get(0)).y = ym;
-						((Node) contour.get(ns)).x = xm;
-						((Node) contour.get(ns)).y = ym;
+						contour.setNode(0, xm, ym);
+						contour.setNode(ns, xm, ym);
 					}
 				}
 				else {
-					((Node) contour.get(this.selectedNode)).x = xm;
-					((Node) contour.get(this.selectedNode)).y = ym;
+					contour.setNode(this.selectedNode, xm, ym);
 				}
-				((Cell) Supervisor.cells.get(selected.cell)).computeTrajectory();
+				selected.touch();
+				this.dragged = true;
+				updateTrajectory(selected);
 			}
 			repaint();
 			return;
@@ -406,6 +416,11 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 	}
 
 	public void mouseReleased(MouseEvent e) {
+		// A drag is journaled once, when the node is released
+		if (this.dragged) {
+			journal(this.supervisor.getSelected());
+			this.dragged = false;
+		}
 		this.selectedNode = -1;
 		repaint();
 		super.mouseReleased(e);
@@ -420,7 +435,7 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 		boolean m = ((modifiers & 0x2) == 2) || ((modifiers & 0x4) == 4);
 		if (code == 32) {
 			Supervisor.incFrame(1);
-			this.supervisor.updateAll(null, true);
+			this.supervisor.select(null);
 		}
 		if (code == 10) {
 			create();
@@ -442,7 +457,7 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 				Point2D.Double cog = this.clipboard.getPolyline().computeCoG();
 				double dx = offScreenX(c.x) - cog.x;
 				double dy = offScreenY(c.y) - cog.y;
-				this.clipboard.getPolyline().translate(dx, dy);
+				this.clipboard.getEditablePolyline().translate(dx, dy);
 				selected = this.supervisor.createOutline(this.imp.getFrame(), this.clipboard.getPolyline());
 				this.clipboard = this.clipboard.duplicate();
 			}
@@ -482,6 +497,8 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 			Polyline r = s.resample(1000);
 			Polyline p = r.simplify(DrawParameters.tolerance);
 			selected.setPolyline(p);
+			updateTrajectory(selected);
+			journal(selected);
 		}
 		repaint();
 	}
@@ -493,10 +510,27 @@ public class ICLTCanvas extends ImageCanvas implements KeyListener {
 			Polyline r = s.resample(1000);
 			Polyline p = r.smooth(DrawParameters.smooth);
 			selected.setPolyline(p);
+			updateTrajectory(selected);
+			journal(selected);
 		}
 		cancel();
 	}
 
+	private void updateTrajectory(Outline outline) {
+		Cell cell = Supervisor.cells.getCell(outline.cell);
+		if (cell != null) {
+			cell.updateTrajectory(outline.getFrame());
+		}
+	}
+
+	// An edited in-between outline became a keyframe, the tables list it then
+	private void journal(Outline outline) {
+		if (Supervisor.journal != null) {
+			Supervisor.journal.putOutline(outline);
+		}
+		this.supervisor.fireChanged(outline);
+	}
+
 	private void write(Graphics g, String text, int x, int y) {
 		g.setColor(Color.BLACK);
 		g.drawString(text, x, y);
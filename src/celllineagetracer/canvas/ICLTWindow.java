@@ -59,6 +59,7 @@ import javax.swing.JToolBar;
 import celllineagetracer.Supervisor;
 import celllineagetracer.cell.Cell;
 import celllineagetracer.outline.Outline;
+import celllineagetracer.pixelclass.PixelClasses;
 import ij.ImagePlus;
 import ij.gui.StackWindow;
 
@@ -212,7 +213,7 @@ public class ICLTWindow extends StackWindow implements KeyListener, ActionListen
 		else if (e.getSource() == this.bnControlLast) {
 			Supervisor.goFrame(this.imp.getNFrames());
 		}
-		this.supervisor.updateAll(null, true);
+		this.supervisor.select(null);
 	}
 
 	public String getCell() {
@@ -249,6 +250,11 @@ public class ICLTWindow extends StackWindow implements KeyListener, ActionListen
 		for (String cell : Supervisor.cells.keySet()) {
 			this.cmbCells.addItem(cell);
 		}
+		if (Supervisor.lineage != null) {
+			for (String cell : Supervisor.lineage.getNames(Supervisor.cells)) {
+				this.cmbCells.addItem(cell);
+			}
+		}
 		if (selectedCell != null) {
 			this.cmbCells.select(selectedCell);
 		}
@@ -288,9 +294,14 @@ public class ICLTWindow extends StackWindow implements KeyListener, ActionListen
 		else if (e.getSource() == this.cmbClass) {
 			Outline s = this.supervisor.getSelected();
 			if (s != null) {
-				s.klass = this.cmbClass.getSelectedItem();
+				s.materialize();
+				s.klass = PixelClasses.getId(this.cmbClass.getSelectedItem());
+				if (Supervisor.journal != null) {
+					Supervisor.journal.putOutline(s);
+				}
+				this.supervisor.fireChanged(s);
 			}
-			this.supervisor.updateAll(s, true);
+			this.supervisor.select(s);
 		}
 		if (e.getSource() == this.cmbCells) {
 			String name = this.cmbCells.getSelectedItem();
@@ -299,7 +310,10 @@ public class ICLTWindow extends StackWindow implements KeyListener, ActionListen
 			if (cell != null) {
 				this.cmbClass.select(cell.getDefaultClass());
 			}
-			this.supervisor.updateAll(s, true);
+			else if ((Supervisor.lineage != null) && Supervisor.lineage.contains(name)) {
+				this.cmbClass.select(Supervisor.lineage.getDefaultClass());
+			}
+			this.supervisor.select(s);
 		}
 	}
 
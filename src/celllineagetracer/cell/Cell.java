@@ -35,22 +35,28 @@
 package celllineagetracer.cell;
 
 import java.awt.Color;
-import java.awt.geom.Point2D;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.Set;
 import java.util.TreeSet;
 
+import celllineagetracer.Supervisor;
+import celllineagetracer.outline.Interpolation;
+import celllineagetracer.outline.Interpolations;
 import celllineagetracer.outline.Outline;
 import celllineagetracer.outline.Outlines;
 
+// The outlines of a cell are its keyframes, drawn or read, and the
+// interpolations between two keyframes which compute the outlines of the
+// frames in between when they are asked for
 public class Cell {
 	private int hue;
 	private String defaultClass;
 	private boolean fix;
 	private boolean singleton;
 	private Outlines outlines;
-	private ArrayList<TrajectoryPoint> trajectory;
+	private Interpolations interpolations = new Interpolations();
+	private Trajectory trajectory = new Trajectory();
 
 	public Cell(String defaultClass, int hue, boolean fix, boolean singleton) {
 		this.defaultClass = defaultClass;
@@ -61,33 +67,90 @@ public class Cell {
 	}
 
 	public void addOutline(int frame, Outline outline) {
+		addOutline(frame, outline, true);
+	}
+
+	// Bulk loaders pass false and call computeTrajectory() once at the end
+	public void addOutline(int frame, Outline outline, boolean trajectory) {
 		if (this.outlines != null) {
-			this.outlines.put(new Integer(frame), outline);
+			Outline previous = this.outlines.put(new Integer(frame), outline);
+			Supervisor.index.remove(frame, previous);
+			if (previous != null) {
+				Supervisor.cache.forget(previous);
+			}
+			Supervisor.index.add(frame, outline);
+			if (trajectory) {
+				this.trajectory.set(frame, outline.getCoG());
+			}
+			if (this.interpolations.find(frame) != null) {
+				this.interpolations.cut(frame, frame);
+				Supervisor.index.setInterpolated(this, !this.interpolations.isEmpty());
+			}
 		}
-		computeTrajectory();
 	}
 
+	// Removes the outline of the frame, the in-between one as well as the
+	// keyframe with the interpolations computed from it
 	public void removeOutline(int frame) {
 		if (this.outlines != null) {
-			this.outlines.remove(new Integer(frame));
+			Outline previous = this.outlines.remove(new Integer(frame));
+			Supervisor.index.remove(frame, previous);
+			if (previous != null) {
+				Supervisor.cache.forget(previous);
+			}
 		}
-		computeTrajectory();
+		this.trajectory.remove(frame);
+		this.interpolations.cut(frame, frame);
+		this.interpolations.removeKeyframe(frame);
+		Supervisor.index.setInterpolated(this, !this.interpolations.isEmpty());
+	}
+
+	// Replaces the outlines of the in-between frames by the interpolation,
+	// the keyframes replaced are returned
+	public ArrayList<Outline> interpolate(Interpolation interpolation) {
+		ArrayList<Outline> removed = new ArrayList<Outline>();
+		if (this.outlines != null) {
+			for (int frame = interpolation.getFrom(); frame <= interpolation.getTo(); frame++) {
+				Outline previous = this.outlines.remove(new Integer(frame));
+				if (previous != null) {
+					Supervisor.index.remove(frame, previous);
+					Supervisor.cache.forget(previous);
+					this.trajectory.remove(frame);
+					removed.add(previous);
+				}
+			}
+		}
+		this.interpolations.add(interpolation);
+		Supervisor.index.setInterpolated(this, true);
+		return removed;
+	}
+
+	public Collection<Interpolation> getInterpolations() {
+		return this.interpolations.values();
 	}
 
 	public void removeAllOutlines() {
 		if (this.outlines != null) {
+			for (Integer frame : this.outlines.keySet()) {
+				Supervisor.index.remove(frame.intValue(), this.outlines.get(frame));
+				Supervisor.cache.forget(this.outlines.get(frame));
+			}
 			this.outlines.clear();
 		}
-		computeTrajectory();
+		this.trajectory.clear();
+		this.interpolations.clear();
+		Supervisor.index.setInterpolated(this, false);
 	}
 
+	// The keyframes and the in-between frames
 	public int getCountOutline() {
 		if (this.outlines != null) {
-			return this.outlines.size();
+			return this.outlines.size() + this.interpolations.countFrames();
 		}
 		return 0;
 	}
 
+	// The frames of the keyframes
 	public Set<Integer> getListOutlinesFrame() {
 		if (this.outlines != null) {
 			return this.outlines.keySet();
@@ -95,25 +158,78 @@ public class Cell {
 		return new TreeSet<Integer>();
 	}
 
+	// The frames of the keyframes and of the in-between outlines, sorted
+	public Set<Integer> getListFrames() {
+		TreeSet<Integer> frames = new TreeSet<Integer>(getListOutlinesFrame());
+		for (Interpolation interpolation : this.interpolations.values()) {
+			for (int frame = interpolation.getFrom(); frame <= interpolation.getTo(); frame++) {
+				frames.add(frame);
+			}
+		}
+		return frames;
+	}
+
+	// The keyframe of the frame, or the in-between outline computed for it
 	public Outline getOutline(Integer frame) {
+		Outline outline = getKeyframe(frame);
+		if (outline != null) {
+			return outline;
+		}
+		return getInterpolatedOutline(frame);
+	}
+
+	public Outline getKeyframe(int frame) {
 		if (this.outlines != null) {
 			return (Outline) this.outlines.get(frame);
 		}
 		return null;
 	}
 
-	public ArrayList<TrajectoryPoint> getTrajectory() {
+	public Outline getInterpolatedOutline(int frame) {
+		Interpolation interpolation = this.interpolations.find(frame);
+		if ((interpolation == null) || (this.outlines == null)) {
+			return null;
+		}
+		Outline a = this.outlines.get(interpolation.getFirst());
+		Outline b = this.outlines.get(interpolation.getLast());
+		if ((a == null) || (b == null)) {
+			return null;
+		}
+		return interpolation.getOutline(frame, a, b);
+	}
+
+	public boolean isInterpolated(int frame) {
+		return this.interpolations.find(frame) != null;
+	}
+
+	// Without computing the in-between outline
+	public boolean hasOutline(int frame) {
+		return (getKeyframe(frame) != null) || isInterpolated(frame);
+	}
+
+	public Trajectory getTrajectory() {
 		return this.trajectory;
 	}
 
+	// To call after an edit of the outline of the frame. The trajectory goes
+	// through the keyframes only.
+	public void updateTrajectory(int frame) {
+		Outline outline = getKeyframe(frame);
+		if (outline != null) {
+			this.trajectory.set(frame, outline.getCoG());
+		}
+	}
+
+	// Rebuilds the whole trajectory, once after a bulk load
 	public void computeTrajectory() {
-		ArrayList<Integer> sorted = new ArrayList<Integer>(this.outlines.keySet());
-		Collections.sort(sorted);
-		this.trajectory = new ArrayList<TrajectoryPoint>();
-		for (Integer i : sorted) {
-			Outline outline = (Outline) this.outlines.get(i);
-			Point2D.Double cog = outline.getPolyline().computeCoG();
-			this.trajectory.add(new TrajectoryPoint(cog.x, cog.y, outline.getFrame()));
+		int[] frames = new int[this.outlines.size()];
+		int count = 0;
+		for (Integer frame : this.outlines.keySet()) {
+			frames[count++] = frame.intValue();
+		}
+		this.trajectory.reset(frames, count);
+		for (int i = 0; i < count; i++) {
+			this.trajectory.setPoint(i, ((Outline) this.outlines.get(this.trajectory.getFrame(i))).getCoG());
 		}
 	}
 
@@ -121,6 +237,10 @@ public class Cell {
 		if (this.outlines == null) {
 			return "Error";
 		}
+		int interpolated = this.interpolations.countFrames();
+		if (interpolated > 0) {
+			return this.outlines.size() + " outlines, " + interpolated + " interpolated";
+		}
 		return this.outlines.size() + " outlines";
 	}
 
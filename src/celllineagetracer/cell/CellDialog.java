@@ -52,6 +52,7 @@ import javax.swing.JSlider;
 import javax.swing.JTextField;
 
 import additionaluserinterface.GridPanel;
+import celllineagetracer.ModelListener;
 import celllineagetracer.Supervisor;
 import ij.IJ;
 import ij.gui.GUI;
@@ -131,7 +132,12 @@ public class CellDialog extends JDialog implements ActionListener {
 				cell.setHue(hue);
 				cell.setDefaultClass(defaultClass);
 				Supervisor.cells.put(name, cell);
-				this.supervisor.updateAll(null, true);
+				if (Supervisor.journal != null) {
+					Supervisor.journal.putCell(name, cell);
+				}
+				this.supervisor.fireChanged(ModelListener.CELLS);
+				this.supervisor.select(null);
+				this.supervisor.flush();
 				if (cell != null) {
 					this.supervisor.getWindow().setCell(name);
 				}
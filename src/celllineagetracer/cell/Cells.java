@@ -34,7 +34,55 @@
 
 package celllineagetracer.cell;
 
+import java.util.Arrays;
 import java.util.HashMap;
 
+import celllineagetracer.NameRegistry;
+
+// The cells by name, also reachable by the id of their name
 public class Cells extends HashMap<String, Cell> {
+	public static final NameRegistry names = new NameRegistry();
+	private Cell[] cells = new Cell[16];
+
+	public static int getId(String name) {
+		return names.getId(name);
+	}
+
+	public static String getName(int id) {
+		return names.getName(id);
+	}
+
+	public Cell getCell(int id) {
+		return (id >= 0) && (id < this.cells.length) ? this.cells[id] : null;
+	}
+
+	public Cell put(String name, Cell cell) {
+		Cell previous = super.put(name, cell);
+		int id = names.getId(name);
+		if (id >= this.cells.length) {
+			this.cells = Arrays.copyOf(this.cells, Math.max(2 * this.cells.length, id + 1));
+		}
+		this.cells[id] = cell;
+		if ((previous != null) && (previous != cell)) {
+			previous.removeAllOutlines();
+		}
+		return previous;
+	}
+
+	public Cell remove(Object name) {
+		Cell cell = super.remove(name);
+		if (cell != null) {
+			this.cells[names.findId((String) name)] = null;
+			cell.removeAllOutlines();
+		}
+		return cell;
+	}
+
+	public void clear() {
+		for (Cell cell : values()) {
+			cell.removeAllOutlines();
+		}
+		Arrays.fill(this.cells, null);
+		super.clear();
+	}
 }
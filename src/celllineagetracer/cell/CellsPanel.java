@@ -95,7 +95,6 @@ public class CellsPanel extends JPanel implements ActionListener {
 				this.supervisor.deleteCell(name);
 			}
 		}
-		this.supervisor.updateAll(null, true);
 	}
 
 	public JScrollPane getScrollPane() {
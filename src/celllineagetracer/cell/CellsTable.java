@@ -43,26 +43,25 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.StringTokenizer;
 
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 
 import celllineagetracer.Supervisor;
 import ij.IJ;
 
 public class CellsTable extends JTable {
 	private String[] headers = { "Objects", "Hue", "Default Class", "Information" };
+	private CellsModel model = new CellsModel();
 
 	public CellsTable() {
-		DefaultTableModel model = new DefaultTableModel(null, this.headers) {
-			public boolean isCellEditable(int row, int col) {
-				return false;
-			}
-		};
-		setModel(model);
+		setModel(this.model);
 		setAutoCreateRowSorter(true);
 		getColumnModel().getColumn(1).setCellRenderer(new HueTableCellRenderer());
 	}
@@ -75,35 +74,12 @@ public class CellsTable extends JTable {
 		return null;
 	}
 
-	public void add(String[] row) {
-		if (row == null) {
-			return;
-		}
-		DefaultTableModel model = (DefaultTableModel) getModel();
-		model.addRow(row);
-		model.fireTableDataChanged();
-	}
-
-	public void removeRow(int row) {
-		if (row < 0) {
-			return;
-		}
-		((DefaultTableModel) getModel()).removeRow(row);
-	}
-
-	public void removeAllRows() {
-		while (getRowCount() > 0) {
-			((DefaultTableModel) getModel()).removeRow(0);
-		}
-	}
-
 	public String getValue(int col) {
 		int row = convertRowIndexToModel(getSelectedRow());
 		if (row < 0) {
 			return "";
 		}
-		DefaultTableModel model = (DefaultTableModel) getModel();
-		return (String) model.getValueAt(row, col);
+		return (String) this.model.getValueAt(row, col);
 	}
 
 	public JScrollPane getScrollPane(int w, int h) {
@@ -114,28 +90,26 @@ public class CellsTable extends JTable {
 	}
 
 	public void update() {
-		removeAllRows();
-		for (String name : Supervisor.cells.keySet()) {
-			Cell cell = (Cell) Supervisor.cells.get(name);
-			if (cell != null) {
-				String[] row = { name, "" + cell.getHue(), "" + cell.getDefaultClass(), cell.getInformation() };
-				add(row);
-			}
-		}
-		repaint();
+		this.model.update();
+	}
+
+	public void update(Collection<String> names) {
+		this.model.update(names);
 	}
 
-	public void readTable() {
+	// The cells are created from the rows read in a CSV file
+	private void readTable(ArrayList<String[]> rows) {
 		Supervisor.cells.clear();
-		for (int row = 0; row < getRowCount(); row++) {
-			String name = ((String) getValueAt(row, 0)).trim();
+		for (String[] row : rows) {
+			String name = row.length > 0 ? row[0].trim() : "";
 			if (!name.equals("")) {
 				int hue = convertValueAt(row, 1, 0);
-				String klass = (String) getValueAt(row, 2);
+				String klass = row.length > 2 ? row[2] : "";
 				Cell cell = new Cell(klass, hue, true, true);
 				Supervisor.cells.put(name, cell);
 			}
 		}
+		update();
 	}
 
 	public void saveCSV(String filename) {
@@ -169,7 +143,7 @@ public class CellsTable extends JTable {
 		if (filename == null) {
 			return;
 		}
-		removeAllRows();
+		ArrayList<String[]> rows = new ArrayList<String[]>();
 		try {
 			BufferedReader buffer = new BufferedReader(new FileReader(filename));
 			buffer.readLine();
@@ -187,22 +161,22 @@ public class CellsTable extends JTable {
 				while (tokens.hasMoreTokens()) {
 					row[(count++)] = tokens.nextToken();
 				}
-				add(row);
+				rows.add(row);
 				line = buffer.readLine();
 			}
 			buffer.close();
-			readTable();
+			readTable(rows);
 		}
 		catch (Exception ex) {
 			IJ.error("Unable to read the table from " + filename);
 		}
 	}
 
-	private int convertValueAt(int row, int col, int def) {
-		String a = ((String) getValueAt(row, col)).trim();
-		if (a == null) {
+	private int convertValueAt(String[] row, int col, int def) {
+		if (row.length <= col) {
 			return def;
 		}
+		String a = row[col].trim();
 		int i = def;
 		try {
 			i = Integer.parseInt(a);
@@ -212,6 +186,62 @@ public class CellsTable extends JTable {
 		return i;
 	}
 
+	// The rows are the names of the cells, the other columns are read from
+	// the cells when they are displayed
+	private class CellsModel extends AbstractTableModel {
+		private String[] names = new String[0];
+		private HashMap<String, Integer> rows = new HashMap<String, Integer>();
+
+		public void update() {
+			this.names = Supervisor.cells.keySet().toArray(new String[Supervisor.cells.size()]);
+			this.rows = new HashMap<String, Integer>(2 * this.names.length);
+			for (int row = 0; row < this.names.length; row++) {
+				this.rows.put(this.names[row], row);
+			}
+			fireTableDataChanged();
+		}
+
+		// The cells keep their rows, only the ones listed are repainted
+		public void update(Collection<String> names) {
+			for (String name : names) {
+				Integer row = this.rows.get(name);
+				if (row != null) {
+					fireTableRowsUpdated(row, row);
+				}
+			}
+		}
+
+		public int getRowCount() {
+			return this.names.length;
+		}
+
+		public int getColumnCount() {
+			return CellsTable.this.headers.length;
+		}
+
+		public String getColumnName(int col) {
+			return CellsTable.this.headers[col];
+		}
+
+		public Object getValueAt(int row, int col) {
+			String name = this.names[row];
+			if (col == 0) {
+				return name;
+			}
+			Cell cell = (Cell) Supervisor.cells.get(name);
+			if (cell == null) {
+				return "";
+			}
+			if (col == 1) {
+				return "" + cell.getHue();
+			}
+			if (col == 2) {
+				return "" + cell.getDefaultClass();
+			}
+			return cell.getInformation();
+		}
+	}
+
 	public class HueTableCellRenderer extends DefaultTableCellRenderer {
 		public HueTableCellRenderer() {
 		}
@@ -0,0 +1,104 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package celllineagetracer.cell;
+
+import java.util.TreeSet;
+
+// Binary denomination of the cells: the roots are named 1 to 9, the two
+// daughters of a cell append to its name the digit of its root or 0, up to
+// the given number of divisions. The cells of the lineage are implicit, a
+// cell is only created with its first outline.
+public class Lineage {
+	private int roots;
+	private int divisions;
+	private String klass;
+
+	public Lineage(int roots, int divisions, String klass) {
+		this.roots = roots;
+		this.divisions = divisions;
+		this.klass = klass;
+	}
+
+	public int getRoots() {
+		return this.roots;
+	}
+
+	public int getDivisions() {
+		return this.divisions;
+	}
+
+	public String getDefaultClass() {
+		return this.klass;
+	}
+
+	public boolean contains(String name) {
+		if ((name == null) || (name.length() == 0) || (name.length() > this.divisions + 1)) {
+			return false;
+		}
+		char root = name.charAt(0);
+		if ((root < '1') || (root > '0' + this.roots)) {
+			return false;
+		}
+		for (int i = 1; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if ((c != root) && (c != '0')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public Cell createCell() {
+		int hue = (int) (Math.random() * 359.0D);
+		return new Cell(this.klass, hue, true, true);
+	}
+
+	// The names to offer beside the existing cells: the roots and the
+	// daughters of the existing cells of the lineage, not yet created
+	public TreeSet<String> getNames(Cells cells) {
+		TreeSet<String> names = new TreeSet<String>();
+		for (int i = 1; i <= this.roots; i++) {
+			names.add("" + i);
+		}
+		for (String name : cells.keySet()) {
+			if (contains(name) && (name.length() <= this.divisions)) {
+				names.add(name + name.charAt(0));
+				names.add(name + "0");
+			}
+		}
+		names.removeAll(cells.keySet());
+		return names;
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package celllineagetracer.cell;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+
+// Centers of gravity of the outlines of a cell sorted by frame, in primitive
+// arrays patched in place when one outline is added, removed or edited
+public class Trajectory {
+	private int[] frames = new int[16];
+	private double[] x = new double[16];
+	private double[] y = new double[16];
+	private int size = 0;
+
+	public int size() {
+		return this.size;
+	}
+
+	public int getFrame(int i) {
+		return this.frames[i];
+	}
+
+	public double getX(int i) {
+		return this.x[i];
+	}
+
+	public double getY(int i) {
+		return this.y[i];
+	}
+
+	// Index of the frame, or -(insertion point) - 1 if it is not there
+	public int indexOf(int frame) {
+		return Arrays.binarySearch(this.frames, 0, this.size, frame);
+	}
+
+	public void set(int frame, Point2D.Double cog) {
+		int i = indexOf(frame);
+		if (i < 0) {
+			i = -i - 1;
+			if (this.size == this.frames.length) {
+				int capacity = 2 * this.size;
+				this.frames = Arrays.copyOf(this.frames, capacity);
+				this.x = Arrays.copyOf(this.x, capacity);
+				this.y = Arrays.copyOf(this.y, capacity);
+			}
+			System.arraycopy(this.frames, i, this.frames, i + 1, this.size - i);
+			System.arraycopy(this.x, i, this.x, i + 1, this.size - i);
+			System.arraycopy(this.y, i, this.y, i + 1, this.size - i);
+			this.frames[i] = frame;
+			this.size++;
+		}
+		this.x[i] = cog.x;
+		this.y[i] = cog.y;
+	}
+
+	public void remove(int frame) {
+		int i = indexOf(frame);
+		if (i < 0) {
+			return;
+		}
+		System.arraycopy(this.frames, i + 1, this.frames, i, this.size - i - 1);
+		System.arraycopy(this.x, i + 1, this.x, i, this.size - i - 1);
+		System.arraycopy(this.y, i + 1, this.y, i, this.size - i - 1);
+		this.size--;
+	}
+
+	public void clear() {
+		this.size = 0;
+	}
+
+	// Replaces the points by the frames given, sorted here
+	public void reset(int[] frames, int count) {
+		Arrays.sort(frames, 0, count);
+		if (count > this.frames.length) {
+			this.x = new double[count];
+			this.y = new double[count];
+			this.frames = new int[count];
+		}
+		System.arraycopy(frames, 0, this.frames, 0, count);
+		this.size = count;
+	}
+
+	void setPoint(int i, Point2D.Double cog) {
+		this.x[i] = cog.x;
+		this.y[i] = cog.y;
+	}
+}
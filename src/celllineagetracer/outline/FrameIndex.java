@@ -0,0 +1,117 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package celllineagetracer.outline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+import celllineagetracer.cell.Cell;
+
+// The keyframes by frame, and the cells which have interpolations, asked for
+// the in-between outlines of the frame
+public class FrameIndex {
+	private HashMap<Integer, ArrayList<Outline>> frames = new HashMap<Integer, ArrayList<Outline>>();
+	private LinkedHashSet<Cell> interpolated = new LinkedHashSet<Cell>();
+
+	public void add(int frame, Outline outline) {
+		if (outline == null) {
+			return;
+		}
+		ArrayList<Outline> outlines = this.frames.get(frame);
+		if (outlines == null) {
+			outlines = new ArrayList<Outline>();
+			this.frames.put(frame, outlines);
+		}
+		outlines.add(outline);
+	}
+
+	public void remove(int frame, Outline outline) {
+		if (outline == null) {
+			return;
+		}
+		ArrayList<Outline> outlines = this.frames.get(frame);
+		if (outlines == null) {
+			return;
+		}
+		for (int i = outlines.size() - 1; i >= 0; i--) {
+			if (outlines.get(i) == outline) {
+				outlines.remove(i);
+				break;
+			}
+		}
+		if (outlines.size() == 0) {
+			this.frames.remove(frame);
+		}
+	}
+
+	public void setInterpolated(Cell cell, boolean interpolated) {
+		if (interpolated) {
+			this.interpolated.add(cell);
+		}
+		else {
+			this.interpolated.remove(cell);
+		}
+	}
+
+	public ArrayList<Outline> getOutlines(int frame) {
+		ArrayList<Outline> keyframes = this.frames.get(frame);
+		ArrayList<Outline> outlines = keyframes == null ? new ArrayList<Outline>() : new ArrayList<Outline>(keyframes);
+		for (Cell cell : this.interpolated) {
+			Outline outline = cell.getInterpolatedOutline(frame);
+			if (outline != null) {
+				outlines.add(outline);
+			}
+		}
+		return outlines;
+	}
+
+	public int getCountOutlines(int frame) {
+		ArrayList<Outline> outlines = this.frames.get(frame);
+		int count = outlines == null ? 0 : outlines.size();
+		for (Cell cell : this.interpolated) {
+			if (cell.isInterpolated(frame)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public void clear() {
+		this.frames.clear();
+		this.interpolated.clear();
+	}
+}
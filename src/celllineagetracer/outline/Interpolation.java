@@ -0,0 +1,216 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package celllineagetracer.outline;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import celllineagetracer.polyline.Polyline;
+
+// The outlines of a cell between two keyframes. Only the frames of the
+// keyframes and the range of the in-between frames are stored, the
+// in-between outlines are computed from the keyframes when a frame is
+// painted, measured or exported, and the last ones are kept in a small
+// cache shared by all the interpolations. An in-between outline becomes a
+// keyframe of its cell when it is edited, see Outline.materialize().
+public class Interpolation {
+	private static final int CACHED = 64;
+	private static final LinkedHashMap<Key, Cached> cache = new LinkedHashMap<Key, Cached>(2 * CACHED, 0.75F, true) {
+		protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+			return size() > CACHED;
+		}
+	};
+
+	private int first;
+	private int last;
+	private int from;
+	private int to;
+	private double tolerance;
+	// The keyframes resampled, computed again when a keyframe is replaced or
+	// edited; the generation tells the cached outlines computed before
+	private Outline keyA = null;
+	private Outline keyB = null;
+	private int versionA;
+	private int versionB;
+	private Polyline ra = null;
+	private Polyline rb = null;
+	private int generation = 0;
+
+	public Interpolation(int first, int last, double tolerance) {
+		this(first, last, first + 1, last - 1, tolerance);
+	}
+
+	public Interpolation(int first, int last, int from, int to, double tolerance) {
+		this.first = first;
+		this.last = last;
+		this.from = from;
+		this.to = to;
+		this.tolerance = tolerance;
+	}
+
+	// The frames from..to of the same interpolation
+	public Interpolation part(int from, int to) {
+		Interpolation part = new Interpolation(this.first, this.last, from, to, this.tolerance);
+		synchronized (this) {
+			part.keyA = this.keyA;
+			part.keyB = this.keyB;
+			part.versionA = this.versionA;
+			part.versionB = this.versionB;
+			part.ra = this.ra;
+			part.rb = this.rb;
+		}
+		return part;
+	}
+
+	public int getFirst() {
+		return this.first;
+	}
+
+	public int getLast() {
+		return this.last;
+	}
+
+	public int getFrom() {
+		return this.from;
+	}
+
+	public int getTo() {
+		return this.to;
+	}
+
+	public double getTolerance() {
+		return this.tolerance;
+	}
+
+	public boolean contains(int frame) {
+		return (frame >= this.from) && (frame <= this.to);
+	}
+
+	public int size() {
+		return this.to - this.from + 1;
+	}
+
+	// The in-between outline of the frame, in the class of the first keyframe
+	public Outline getOutline(int frame, Outline a, Outline b) {
+		Polyline ra;
+		Polyline rb;
+		int generation;
+		synchronized (this) {
+			if ((this.ra == null) || (a != this.keyA) || (b != this.keyB) || (a.getVersion() != this.versionA)
+					|| (b.getVersion() != this.versionB)) {
+				this.keyA = a;
+				this.keyB = b;
+				this.versionA = a.getVersion();
+				this.versionB = b.getVersion();
+				this.ra = a.getPolyline().resample(100);
+				this.rb = b.getPolyline().resample(100);
+				this.ra.makeClockwise();
+				this.rb.makeClockwise();
+				this.generation++;
+			}
+			ra = this.ra;
+			rb = this.rb;
+			generation = this.generation;
+		}
+		Key key = new Key(this, frame);
+		synchronized (cache) {
+			Cached cached = cache.get(key);
+			if ((cached != null) && (cached.generation == generation)) {
+				cached.outline.klass = a.klass;
+				return cached.outline;
+			}
+		}
+		Outline outline = new Outline(compute(frame, ra, rb), a.cell, a.klass, frame);
+		outline.interpolation = this;
+		synchronized (cache) {
+			cache.put(key, new Cached(outline, generation));
+		}
+		return outline;
+	}
+
+	// Blends the resampled keyframes node by node, then simplifies the result
+	private Polyline compute(int frame, Polyline ra, Polyline rb) {
+		int nf = this.last - this.first;
+		int t = frame - this.first;
+		int n = Math.min(ra.size(), rb.size());
+		Polyline d = new Polyline();
+		d.ensureCapacity(n);
+		for (int i = 0; i < n; i++) {
+			double x = ((nf - t) * ra.getX(i) + t * rb.getX(i)) / nf;
+			double y = ((nf - t) * ra.getY(i) + t * rb.getY(i)) / nf;
+			d.add(x, y);
+		}
+		return d.simplify(this.tolerance);
+	}
+
+	// The outline of the frame is no more an in-between one
+	void forget(int frame) {
+		synchronized (cache) {
+			cache.remove(new Key(this, frame));
+		}
+	}
+
+	private static class Key {
+		private Interpolation interpolation;
+		private int frame;
+
+		public Key(Interpolation interpolation, int frame) {
+			this.interpolation = interpolation;
+			this.frame = frame;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return (k.interpolation == this.interpolation) && (k.frame == this.frame);
+		}
+
+		public int hashCode() {
+			return 31 * System.identityHashCode(this.interpolation) + this.frame;
+		}
+	}
+
+	private static class Cached {
+		private Outline outline;
+		private int generation;
+
+		public Cached(Outline outline, int generation) {
+			this.outline = outline;
+			this.generation = generation;
+		}
+	}
+}
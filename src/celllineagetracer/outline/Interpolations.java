@@ -0,0 +1,98 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package celllineagetracer.outline;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+// The interpolations of a cell keyed by their first in-between frame. They
+// never overlap and never cover a keyframe: a keyframe added or removed in
+// the middle of an interpolation splits it.
+public class Interpolations extends TreeMap<Integer, Interpolation> {
+	public Interpolation find(int frame) {
+		Map.Entry<Integer, Interpolation> entry = floorEntry(frame);
+		if ((entry == null) || !entry.getValue().contains(frame)) {
+			return null;
+		}
+		return entry.getValue();
+	}
+
+	public void add(Interpolation interpolation) {
+		cut(interpolation.getFrom(), interpolation.getTo());
+		put(interpolation.getFrom(), interpolation);
+	}
+
+	// Removes the frames from..to, keeping the parts before and after
+	public void cut(int from, int to) {
+		ArrayList<Interpolation> cut = new ArrayList<Interpolation>();
+		for (Interpolation interpolation : headMap(to, true).descendingMap().values()) {
+			if (interpolation.getTo() < from) {
+				break;
+			}
+			cut.add(interpolation);
+		}
+		for (Interpolation interpolation : cut) {
+			remove(interpolation.getFrom());
+			if (interpolation.getFrom() < from) {
+				put(interpolation.getFrom(), interpolation.part(interpolation.getFrom(), from - 1));
+			}
+			if (interpolation.getTo() > to) {
+				put(to + 1, interpolation.part(to + 1, interpolation.getTo()));
+			}
+		}
+	}
+
+	// Removes the interpolations computed from the keyframe of the frame
+	public void removeKeyframe(int frame) {
+		ArrayList<Integer> removed = new ArrayList<Integer>();
+		for (Interpolation interpolation : values()) {
+			if ((interpolation.getFirst() == frame) || (interpolation.getLast() == frame)) {
+				removed.add(interpolation.getFrom());
+			}
+		}
+		for (Integer from : removed) {
+			remove(from);
+		}
+	}
+
+	public int countFrames() {
+		int count = 0;
+		for (Interpolation interpolation : values()) {
+			count += interpolation.size();
+		}
+		return count;
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package celllineagetracer.outline;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import celllineagetracer.Tools;
+
+public class MeasureResults {
+	public static final int CELL = 0;
+	public static final int CLASS = 1;
+
+	private String[] headers;
+	private int[] decimals;
+	private double[][] columns;
+	private int[] cells;
+	private int[] classes;
+	private int count = 0;
+	private ArrayList<String> names = new ArrayList<String>();
+	private HashMap<String, Integer> ids = new HashMap<String, Integer>();
+
+	// The two first columns are the cell and the class names, the other ones
+	// are numbers shown with the given number of decimals (0 for integers).
+	public MeasureResults(String[] headers, int[] decimals) {
+		this.headers = headers;
+		this.decimals = decimals;
+		this.columns = new double[headers.length][];
+		for (int c = 2; c < headers.length; c++) {
+			this.columns[c] = new double[16];
+		}
+		this.cells = new int[16];
+		this.classes = new int[16];
+	}
+
+	public void addRow(String cell, String klass, double[] values) {
+		if (this.count == this.cells.length) {
+			int capacity = 2 * this.count;
+			this.cells = Arrays.copyOf(this.cells, capacity);
+			this.classes = Arrays.copyOf(this.classes, capacity);
+			for (int c = 2; c < this.columns.length; c++) {
+				this.columns[c] = Arrays.copyOf(this.columns[c], capacity);
+			}
+		}
+		this.cells[this.count] = intern(cell);
+		this.classes[this.count] = intern(klass);
+		for (int c = 2; c < this.columns.length; c++) {
+			this.columns[c][this.count] = values[c];
+		}
+		this.count++;
+	}
+
+	public void append(MeasureResults results) {
+		double[] values = new double[this.columns.length];
+		for (int row = 0; row < results.count; row++) {
+			for (int c = 2; c < this.columns.length; c++) {
+				values[c] = results.columns[c][row];
+			}
+			addRow(results.getString(row, CELL), results.getString(row, CLASS), values);
+		}
+	}
+
+	private int intern(String name) {
+		String s = name == null ? "" : name;
+		Integer id = this.ids.get(s);
+		if (id == null) {
+			id = this.names.size();
+			this.names.add(s);
+			this.ids.put(s, id);
+		}
+		return id.intValue();
+	}
+
+	public int getRowCount() {
+		return this.count;
+	}
+
+	public int getColumnCount() {
+		return this.headers.length;
+	}
+
+	public String getHeader(int col) {
+		return this.headers[col];
+	}
+
+	public int getDecimals(int col) {
+		return this.decimals[col];
+	}
+
+	public boolean isText(int col) {
+		return (col == CELL) || (col == CLASS);
+	}
+
+	public String getString(int row, int col) {
+		if (col == CELL) {
+			return this.names.get(this.cells[row]);
+		}
+		if (col == CLASS) {
+			return this.names.get(this.classes[row]);
+		}
+		return Tools.appendFixed(new StringBuilder(), this.columns[col][row], this.decimals[col]).toString();
+	}
+
+	public double getDouble(int row, int col) {
+		return isText(col) ? Double.NaN : this.columns[col][row];
+	}
+
+	public void saveCSV(String filename) throws IOException {
+		BufferedWriter buffer = new BufferedWriter(new FileWriter(filename), 1 << 16);
+		try {
+			StringBuilder line = new StringBuilder(256);
+			int ncol = this.headers.length;
+			for (int c = 0; c < ncol; c++) {
+				line.append(this.headers[c]).append(c == ncol - 1 ? '\n' : ',');
+			}
+			buffer.append(line);
+			for (int row = 0; row < this.count; row++) {
+				line.setLength(0);
+				line.append(this.names.get(this.cells[row])).append(',');
+				line.append(this.names.get(this.classes[row]));
+				for (int c = 2; c < ncol; c++) {
+					line.append(',');
+					Tools.appendFixed(line, this.columns[c][row], this.decimals[c]);
+				}
+				line.append('\n');
+				buffer.append(line);
+			}
+		}
+		finally {
+			buffer.close();
+		}
+	}
+}
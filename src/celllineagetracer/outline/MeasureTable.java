@@ -32,18 +32,64 @@
  * ICLT. If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package celllineagetracer.outline;
 
+import java.awt.BorderLayout;
+import java.awt.Component;
 import java.awt.Dimension;
-import java.util.ArrayList;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+
+import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.JToolBar;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+
+import celllineagetracer.ICLTFile;
+import celllineagetracer.Tools;
+import ij.IJ;
 
 public class MeasureTable extends JTable {
-	public MeasureTable(String[] headers) {
-		DefaultTableModel model = new DefaultTableModel(null, headers) {
+	private MeasureResults results;
+
+	public MeasureTable(final MeasureResults results) {
+		this.results = results;
+		AbstractTableModel model = new AbstractTableModel() {
+			public int getRowCount() {
+				return results.getRowCount();
+			}
+
+			public int getColumnCount() {
+				return results.getColumnCount();
+			}
+
+			public String getColumnName(int col) {
+				return results.getHeader(col);
+			}
+
+			public Class<?> getColumnClass(int col) {
+				if (results.isText(col)) {
+					return String.class;
+				}
+				return results.getDecimals(col) == 0 ? Integer.class : Double.class;
+			}
+
+			public Object getValueAt(int row, int col) {
+				if (results.isText(col)) {
+					return results.getString(row, col);
+				}
+				double value = results.getDouble(row, col);
+				if (results.getDecimals(col) == 0) {
+					return Integer.valueOf((int) value);
+				}
+				return Double.valueOf(value);
+			}
+
 			public boolean isCellEditable(int row, int col) {
 				return false;
 			}
@@ -51,32 +97,11 @@ public class MeasureTable extends JTable {
 		setAutoCreateRowSorter(true);
 		setModel(model);
 		setSelectionMode(2);
+		setDefaultRenderer(Double.class, new FixedTableCellRenderer());
 	}
 
-	public void setData(ArrayList<String[]> rows) {
-		removeRows();
-		if (rows.size() == 0) {
-			return;
-		}
-		for (String[] row : rows) {
-			add(row);
-		}
-	}
-
-	public void add(String[] row) {
-		String[] rowdel = new String[row.length + 1];
-		for (int i = 0; i < row.length; i++) {
-			rowdel[i] = row[i];
-		}
-		rowdel[row.length] = "���";
-		DefaultTableModel model = (DefaultTableModel) getModel();
-		model.addRow(rowdel);
-	}
-
-	public void removeRows() {
-		while (getRowCount() > 0) {
-			((DefaultTableModel) getModel()).removeRow(0);
-		}
+	public MeasureResults getResults() {
+		return this.results;
 	}
 
 	public String getValue(int col) {
@@ -88,8 +113,7 @@ public class MeasureTable extends JTable {
 		if (row < 0) {
 			return "";
 		}
-		DefaultTableModel model = (DefaultTableModel) getModel();
-		return (String) model.getValueAt(row, col);
+		return this.results.getString(row, col);
 	}
 
 	public JScrollPane getPane(int w, int h) {
@@ -100,9 +124,43 @@ public class MeasureTable extends JTable {
 	}
 
 	public void show(String title, int w, int h) {
-		JFrame frame = new JFrame(title);
-		frame.add(getPane(w, h));
+		final JFrame frame = new JFrame(title);
+		JButton bnSave = new JButton("Save as CSV...");
+		JToolBar tool = new JToolBar();
+		tool.setFloatable(false);
+		tool.add(bnSave);
+		bnSave.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				String path = ICLTFile.browseSave(System.getProperty("user.home") + "/" + frame.getTitle().trim() + ".csv");
+				if (path != null) {
+					try {
+						MeasureTable.this.results.saveCSV(path);
+					}
+					catch (IOException ex) {
+						IJ.error("Unable to save the measurements into " + path);
+					}
+				}
+			}
+		});
+		frame.add(tool, BorderLayout.NORTH);
+		frame.add(getPane(w, h), BorderLayout.CENTER);
 		frame.pack();
 		frame.setVisible(true);
 	}
+
+	public class FixedTableCellRenderer extends DefaultTableCellRenderer {
+		public FixedTableCellRenderer() {
+			setHorizontalAlignment(RIGHT);
+		}
+
+		public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus,
+				int row, int col) {
+			Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, col);
+			if (value instanceof Double) {
+				int decimals = MeasureTable.this.results.getDecimals(table.convertColumnIndexToModel(col));
+				setText(Tools.appendFixed(new StringBuilder(), ((Double) value).doubleValue(), decimals).toString());
+			}
+			return c;
+		}
+	}
 }
@@ -40,53 +40,101 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Polygon;
+import java.awt.Rectangle;
 import java.awt.geom.Point2D;
+import java.io.File;
 
 import celllineagetracer.Supervisor;
 import celllineagetracer.canvas.ICLTCanvas;
 import celllineagetracer.cell.Cell;
+import celllineagetracer.cell.Cells;
 import celllineagetracer.pixelclass.PixelClass;
-import celllineagetracer.polyline.Node;
+import celllineagetracer.pixelclass.PixelClasses;
+import celllineagetracer.polyline.Moments;
 import celllineagetracer.polyline.Polyline;
 
 public class Outline {
-	public String cell;
-	public String klass;
-	private Polyline polyline;
+	// Ids of the names of the cell and of the class, see Cells.getId() and
+	// PixelClasses.getId(), -1 if undefined
+	public int cell;
+	public int klass;
+	private volatile Polyline polyline;
+	private OutlineLoader loader;
+	private Point2D.Double cog;
 	private int frame;
+	private int version = 0;
+	private volatile Geometry geometry = null;
+	// The interpolation which computed the outline, null for a keyframe
+	Interpolation interpolation = null;
 
-	public Outline(Polyline polyline, String cell, String klass, int frame) {
+	public Outline(Polyline polyline, int cell, int klass, int frame) {
 		this.polyline = polyline;
 		this.cell = cell;
 		this.klass = klass;
 		this.frame = frame;
 	}
 
+	// The polyline is decoded by the loader on the first access, the center
+	// of gravity is known before so the trajectories do not decode it
+	public Outline(OutlineLoader loader, Point2D.Double cog, int cell, int klass, int frame) {
+		this.loader = loader;
+		this.cog = cog;
+		this.cell = cell;
+		this.klass = klass;
+		this.frame = frame;
+	}
+
+	// The duplicate shares the polyline, copied by the first outline that
+	// edits it through getEditablePolyline()
 	public Outline duplicate() {
-		Polyline p = new Polyline();
-		for (Node node : this.polyline) {
-			p.add(new Node(node.x, node.y));
-		}
+		Polyline p = getPolyline();
+		p.share();
 		return new Outline(p, this.cell, this.klass, this.frame);
 	}
 
+	public String getCellName() {
+		return Cells.getName(this.cell);
+	}
+
+	public String getClassName() {
+		return PixelClasses.getName(this.klass);
+	}
+
 	public int getFrame() {
 		return this.frame;
 	}
 
 	public void setFrame(int frame) {
 		this.frame = frame;
+		touch();
+	}
+
+	// To call after any change of the nodes of the polyline, the edited
+	// outline can no longer be unloaded
+	public void touch() {
+		this.version++;
+		this.geometry = null;
+		if (this.loader != null) {
+			synchronized (this) {
+				this.loader = null;
+			}
+			Supervisor.cache.forget(this);
+		}
+	}
+
+	public int getVersion() {
+		return this.version;
 	}
 
 	public boolean contains(int x, int y) {
-		return getPolygon().contains(x, y);
+		return getGeometry().getPolygon().contains(x, y);
 	}
 
 	public Color getCellColor() {
-		if (this.cell == null) {
+		if (this.cell < 0) {
 			return Color.BLACK;
 		}
-		Cell c = (Cell) Supervisor.cells.get(this.cell);
+		Cell c = Supervisor.cells.getCell(this.cell);
 		if (c == null) {
 			return Color.WHITE;
 		}
@@ -94,10 +142,10 @@ public class Outline {
 	}
 
 	public Color getClassColor() {
-		if (this.klass == null) {
+		if (this.klass < 0) {
 			return Color.BLACK;
 		}
-		PixelClass c = (PixelClass) Supervisor.classes.get(this.klass);
+		PixelClass c = Supervisor.classes.getPixelClass(this.klass);
 		if (c == null) {
 			return Color.WHITE;
 		}
@@ -105,21 +153,13 @@ public class Outline {
 	}
 
 	public void drawArea(Graphics2D g, Color color, int areaOpacity, ICLTCanvas canvas) {
-		Polygon polygon = getPolygon();
-		Polygon p = new Polygon();
-		for (int i = 0; i < polygon.npoints; i++) {
-			p.addPoint(canvas.screenX(polygon.xpoints[i]), canvas.screenX(polygon.ypoints[i]));
-		}
+		Polygon p = getGeometry().getScreenPolygon(canvas);
 		g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), areaOpacity));
 		g.fillPolygon(p);
 	}
 
 	public void drawCont(Graphics2D g, Color color, int contourStroke, ICLTCanvas canvas) {
-		Polygon polygon = getPolygon();
-		Polygon p = new Polygon();
-		for (int i = 0; i < polygon.npoints; i++) {
-			p.addPoint(canvas.screenX(polygon.xpoints[i]), canvas.screenX(polygon.ypoints[i]));
-		}
+		Polygon p = getGeometry().getScreenPolygon(canvas);
 		g.setColor(color);
 		g.setStroke(new BasicStroke(contourStroke));
 		g.drawPolygon(p);
@@ -127,7 +167,7 @@ public class Outline {
 	}
 
 	public void drawCross(Graphics2D g, Color color, int centerSize, ICLTCanvas canvas) {
-		Point2D.Double pt = this.polyline.computeCoG();
+		Point2D.Double pt = getCoG();
 		g.setColor(color);
 		double sz = canvas.getMagnification() * centerSize;
 		int x = canvas.screenXD(pt.x);
@@ -141,7 +181,7 @@ public class Outline {
 	}
 
 	public void drawText(Graphics2D g, Color color, int textFont, int type, ICLTCanvas canvas) {
-		Point2D.Double cog = this.polyline.computeCoG();
+		Point2D.Double cog = getCoG();
 		String t = "" + canvas.imp.getFrame();
 
 		g.setFont(new Font("Monospace", 2, textFont));
@@ -155,36 +195,243 @@ public class Outline {
 		g.drawString(t, x, y);
 	}
 
+	// A copy, the callers may keep or change it
 	public Polygon getPolygon() {
-		Polygon polygon = new Polygon();
-		for (Node node : this.polyline) {
-			polygon.addPoint((int) Math.round(node.x), (int) Math.round(node.y));
-		}
-		return polygon;
+		Polygon polygon = getGeometry().getPolygon();
+		return new Polygon(polygon.xpoints, polygon.ypoints, polygon.npoints);
+	}
+
+	public Rectangle getBounds() {
+		return getGeometry().getPolygon().getBounds();
+	}
+
+	public double getLength() {
+		return getGeometry().getLength();
 	}
 
 	public void setPolyline(Polyline polyline) {
-		this.polyline = polyline;
+		materialize();
+		synchronized (this) {
+			this.polyline = polyline;
+			this.cog = null;
+		}
+		touch();
+	}
+
+	// The geometry is computed again for another polyline or after a change
+	// of its nodes
+	private Geometry getGeometry() {
+		Polyline p = getPolyline();
+		Geometry g = this.geometry;
+		if ((g == null) || (g.polyline != p) || (g.version != p.getVersion())) {
+			g = new Geometry(p);
+			this.geometry = g;
+		}
+		return g;
 	}
 
+	// The cache is told outside of the lock of the outline, it takes the
+	// locks of the outlines it unloads
 	public Polyline getPolyline() {
-		return this.polyline;
+		Polyline p = this.polyline;
+		if (p == null) {
+			boolean decoded = false;
+			synchronized (this) {
+				p = this.polyline;
+				if ((p == null) && (this.loader != null)) {
+					p = this.loader.load();
+					this.polyline = p;
+					decoded = true;
+				}
+			}
+			if (decoded) {
+				Supervisor.cache.loaded(this, p.capacity());
+			}
+		}
+		return p;
+	}
+
+	// The polyline to change in place, followed by a call to touch(). A
+	// shared polyline is copied first and the outline is no more unloaded.
+	public Polyline getEditablePolyline() {
+		materialize();
+		Polyline p = getPolyline();
+		boolean forget;
+		synchronized (this) {
+			if (p.isShared()) {
+				p = p.copy();
+			}
+			this.polyline = p;
+			forget = this.loader != null;
+			this.loader = null;
+		}
+		if (forget) {
+			Supervisor.cache.forget(this);
+		}
+		return p;
+	}
+
+	// An in-between outline becomes a keyframe of its cell, to call before it
+	// is changed, as the journal records it then
+	public void materialize() {
+		Interpolation interpolation = this.interpolation;
+		if (interpolation == null) {
+			return;
+		}
+		this.interpolation = null;
+		interpolation.forget(this.frame);
+		Cell c = Supervisor.cells.getCell(this.cell);
+		if (c != null) {
+			c.addOutline(this.frame, this);
+		}
+	}
+
+	public boolean isInterpolated() {
+		return this.interpolation != null;
+	}
+
+	// Keeps the polyline in memory for good if the loader maps the file, so
+	// that the file can be replaced, false if the outline does not read it
+	public boolean release(File file) {
+		synchronized (this) {
+			if ((this.loader == null) || !file.equals(this.loader.getFile())) {
+				return false;
+			}
+			if (this.polyline == null) {
+				this.polyline = this.loader.load();
+			}
+			this.loader = null;
+		}
+		Supervisor.cache.forget(this);
+		return true;
+	}
+
+	// Drops the decoded polyline if it can be decoded again
+	public synchronized boolean unload() {
+		if ((this.loader == null) || (this.polyline == null)) {
+			return false;
+		}
+		this.polyline = null;
+		this.geometry = null;
+		return true;
+	}
+
+	public boolean isLoaded() {
+		return this.polyline != null;
+	}
+
+	public Point2D.Double getCoG() {
+		Point2D.Double c = this.cog;
+		if ((c != null) && (this.version == 0)) {
+			return new Point2D.Double(c.x, c.y);
+		}
+		c = getGeometry().getCoG();
+		return new Point2D.Double(c.x, c.y);
+	}
+
+	public Moments getMoments() {
+		return getGeometry().getMoments();
 	}
 
 	public String getInfo() {
-		String info = this.cell == null ? "Undefined" : this.cell;
-		info = info + " (" + (this.klass == null ? "" : this.klass) + ") ";
-		if (this.polyline == null) {
+		String info = this.cell < 0 ? "Undefined" : getCellName();
+		info = info + " (" + (this.klass < 0 ? "" : getClassName()) + ") ";
+		Polyline polyline = getPolyline();
+		if (polyline == null) {
 			info = info + " no polyline";
 		}
 		else {
-			info = info + " length: " + String.format("%4.1f", this.polyline.length());
-			info = info + " nodes:" + this.polyline.size();
+			info = info + " length: " + String.format("%4.1f", getLength());
+			info = info + " nodes:" + polyline.size();
+			Moments moments = getMoments();
+			info = info + " area: " + String.format("%4.1f", moments.getArea());
+			info = info + " major: " + String.format("%4.1f", moments.getMajor());
+			info = info + " minor: " + String.format("%4.1f", moments.getMinor());
+			info = info + " angle: " + String.format("%4.1f", moments.getOrientation());
+			info = info + " solidity: " + String.format("%4.2f", moments.getSolidity());
 		}
 		return info;
 	}
 
 	public String toString() {
-		return "outline size=" + this.polyline.size();
+		return "outline size=" + getPolyline().size();
+	}
+
+	// Polygon, center of gravity, length and moments of one version of a
+	// polyline, each computed on first use. The polygon on the screen is
+	// kept for one view of the canvas.
+	private static class Geometry {
+		private Polyline polyline;
+		private int version;
+		private Polygon polygon = null;
+		private Point2D.Double cog = null;
+		private double length = -1.0D;
+		private Moments moments = null;
+		private Polygon screen = null;
+		private ICLTCanvas canvas = null;
+		private double magnification;
+		private int srcX;
+
+		public Geometry(Polyline polyline) {
+			this.polyline = polyline;
+			this.version = polyline.getVersion();
+		}
+
+		public synchronized Polygon getPolygon() {
+			if (this.polygon == null) {
+				Polyline p = this.polyline;
+				int n = p.size();
+				int[] x = new int[n];
+				int[] y = new int[n];
+				for (int i = 0; i < n; i++) {
+					x[i] = (int) Math.round(p.getX(i));
+					y[i] = (int) Math.round(p.getY(i));
+				}
+				this.polygon = new Polygon(x, y, n);
+			}
+			return this.polygon;
+		}
+
+		public synchronized Point2D.Double getCoG() {
+			if (this.cog == null) {
+				this.cog = this.polyline.computeCoG();
+			}
+			return this.cog;
+		}
+
+		public synchronized double getLength() {
+			if (this.length < 0.0D) {
+				this.length = this.polyline.length();
+			}
+			return this.length;
+		}
+
+		public synchronized Moments getMoments() {
+			if (this.moments == null) {
+				this.moments = new Moments(this.polyline);
+			}
+			return this.moments;
+		}
+
+		// Both coordinates go through screenX() as before
+		public synchronized Polygon getScreenPolygon(ICLTCanvas canvas) {
+			Rectangle src = canvas.getSrcRect();
+			double magnification = canvas.getMagnification();
+			if ((this.screen == null) || (this.canvas != canvas) || (this.magnification != magnification)
+					|| (this.srcX != src.x)) {
+				Polygon polygon = getPolygon();
+				int[] x = new int[polygon.npoints];
+				int[] y = new int[polygon.npoints];
+				for (int i = 0; i < polygon.npoints; i++) {
+					x[i] = canvas.screenX(polygon.xpoints[i]);
+					y[i] = canvas.screenX(polygon.ypoints[i]);
+				}
+				this.screen = new Polygon(x, y, polygon.npoints);
+				this.canvas = canvas;
+				this.magnification = magnification;
+				this.srcX = src.x;
+			}
+			return this.screen;
+		}
 	}
 }
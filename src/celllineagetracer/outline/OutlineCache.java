@@ -0,0 +1,117 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package celllineagetracer.outline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+
+// Accounts the polylines decoded from a project file and unloads the ones
+// the farthest in time from the displayed frame when the budget is exceeded.
+// Only the outlines never edited since they were read are tracked, their
+// loader can decode them again.
+public class OutlineCache {
+	// Heap size of a node in the packed coordinates of the polyline, two
+	// doubles, counted over the capacity of the polyline
+	public static final int BYTES_PER_NODE = 16;
+	private IdentityHashMap<Outline, Integer> loaded = new IdentityHashMap<Outline, Integer>();
+	private long budget = 512L << 20;
+	private long bytes = 0;
+	private int frame = 1;
+
+	public synchronized void setBudget(int megabytes) {
+		this.budget = (long) megabytes << 20;
+		trim();
+	}
+
+	public synchronized long getBytes() {
+		return this.bytes;
+	}
+
+	public synchronized void loaded(Outline outline, int nodes) {
+		Integer previous = this.loaded.put(outline, nodes);
+		if (previous != null) {
+			this.bytes -= (long) previous * BYTES_PER_NODE;
+		}
+		this.bytes += (long) nodes * BYTES_PER_NODE;
+		if (this.bytes > this.budget) {
+			trim();
+		}
+	}
+
+	public synchronized void forget(Outline outline) {
+		Integer nodes = this.loaded.remove(outline);
+		if (nodes != null) {
+			this.bytes -= (long) nodes * BYTES_PER_NODE;
+		}
+	}
+
+	public synchronized void clear() {
+		this.loaded.clear();
+		this.bytes = 0;
+	}
+
+	public synchronized void setFrame(int frame) {
+		this.frame = frame;
+		trim();
+	}
+
+	// Unloads down to 3/4 of the budget, never the outlines of the frame
+	public synchronized void trim() {
+		if (this.bytes <= this.budget) {
+			return;
+		}
+		final int current = this.frame;
+		ArrayList<Outline> outlines = new ArrayList<Outline>(this.loaded.keySet());
+		Collections.sort(outlines, new Comparator<Outline>() {
+			public int compare(Outline a, Outline b) {
+				return Math.abs(b.getFrame() - current) - Math.abs(a.getFrame() - current);
+			}
+		});
+		long target = this.budget - this.budget / 4;
+		for (Outline outline : outlines) {
+			if (this.bytes <= target) {
+				break;
+			}
+			if (outline.getFrame() == current) {
+				break;
+			}
+			if (outline.unload()) {
+				forget(outline);
+			}
+		}
+	}
+}
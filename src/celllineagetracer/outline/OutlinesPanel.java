@@ -104,7 +104,6 @@ public class OutlinesPanel extends JPanel implements ActionListener {
 			}
 			this.supervisor.deleteOutline(outline);
 		}
-		this.supervisor.updateAll(null, true);
 	}
 
 	public JScrollPane getPane(int w, int h) {
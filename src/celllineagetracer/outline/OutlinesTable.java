@@ -39,72 +39,36 @@ import celllineagetracer.Tools;
 import celllineagetracer.cell.Cell;
 import celllineagetracer.cell.Cells;
 import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import javax.swing.DefaultRowSorter;
 import javax.swing.JFrame;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 
 public class OutlinesTable extends JTable {
+	private OutlinesModel model = new OutlinesModel();
+
 	public OutlinesTable() {
-		String[] headers = { "Object", "Class", "Frame" };
-		DefaultTableModel model = new DefaultTableModel(null, headers) {
-			public boolean isCellEditable(int row, int col) {
-				return false;
-			}
-		};
 		setAutoCreateRowSorter(true);
-		setModel(model);
+		setModel(this.model);
 		setSelectionMode(0);
-	}
-
-	public int getRowFromFirstColumns(String col0, String col1, int col2) {
-		int n = getRowCount();
-		DefaultTableModel model = (DefaultTableModel) getModel();
-		for (int i = 0; i < n; i++) {
-			int frame = Integer.parseInt((String) model.getValueAt(i, 2));
-			String v0 = (String) model.getValueAt(i, 0);
-			v0 = v0 == null ? "" : v0;
-			String v1 = (String) model.getValueAt(i, 1);
-			v1 = v1 == null ? "" : v1;
-			if ((v0.equals(col0.trim())) && (v1.equals(col1.trim())) && (frame == col2)) {
-				return i;
-			}
-		}
-		return -1;
+		// The updated rows move to their place in the sorted view
+		((DefaultRowSorter<?, ?>) getRowSorter()).setSortsOnUpdates(true);
 	}
 
 	public void update() {
-		Cells cells = Supervisor.cells;
-		removeRows();
-		for (String name : cells.keySet()) {
-			Cell cell = (Cell) cells.get(name);
-			if (cell != null) {
-				for (Integer frame : cell.getListOutlinesFrame()) {
-					Outline outline = cell.getOutline(frame);
-					add(new String[] { outline.cell, outline.klass, Tools.frame(frame.intValue()) });
-				}
-			}
-		}
+		this.model.update();
 	}
 
-	public void add(String[] row) {
-		String[] rowdel = new String[row.length + 1];
-		for (int i = 0; i < row.length; i++) {
-			rowdel[i] = row[i];
-		}
-		rowdel[row.length] = "���";
-		DefaultTableModel model = (DefaultTableModel) getModel();
-		model.addRow(rowdel);
-	}
-
-	public void removeRows() {
-		while (getRowCount() > 0) {
-			((DefaultTableModel) getModel()).removeRow(0);
-		}
+	public void update(Collection<Outline> outlines) {
+		this.model.update(outlines);
 	}
 
 	public Outline getOutline() {
-		DefaultTableModel model = (DefaultTableModel) getModel();
 		int r = getSelectedRow();
 		if (r < 0) {
 			return null;
@@ -113,19 +77,22 @@ public class OutlinesTable extends JTable {
 		if (row < 0) {
 			return null;
 		}
-		String cellSel = ((String) model.getValueAt(row, 0)).trim();
-		int frameSel = Tools.convertToInt(((String) model.getValueAt(row, 2)).trim(), -1);
-		for (String name : Supervisor.cells.keySet()) {
-			Cell cell = (Cell) Supervisor.cells.get(name);
-			if (name.equals(cellSel)) {
-				for (Integer frame : cell.getListOutlinesFrame()) {
-					if (frame.intValue() == frameSel) {
-						return cell.getOutline(frame);
-					}
-				}
-			}
+		return this.model.getOutline(row);
+	}
+
+	// Selects and shows the row of the outline, false if it is not listed
+	public boolean select(Outline outline) {
+		int row = this.model.indexOf(outline);
+		if (row < 0) {
+			return false;
+		}
+		int r = convertRowIndexToView(row);
+		if (r < 0) {
+			return false;
 		}
-		return null;
+		setRowSelectionInterval(r, r);
+		scrollRectToVisible(new Rectangle(getCellRect(r, 0, true)));
+		return true;
 	}
 
 	public JScrollPane getPane(int w, int h) {
@@ -141,4 +108,98 @@ public class OutlinesTable extends JTable {
 		frame.pack();
 		frame.setVisible(true);
 	}
+
+	// The rows are the outlines themselves, the text of a row is only formatted
+	// when it is displayed or sorted. The outlines added later are appended.
+	private static class OutlinesModel extends AbstractTableModel {
+		private String[] headers = { "Object", "Class", "Frame" };
+		private ArrayList<Outline> outlines = new ArrayList<Outline>();
+		private IdentityHashMap<Outline, Integer> rows = new IdentityHashMap<Outline, Integer>();
+
+		public void update() {
+			Cells cells = Supervisor.cells;
+			ArrayList<Outline> outlines = new ArrayList<Outline>(this.outlines.size());
+			IdentityHashMap<Outline, Integer> rows = new IdentityHashMap<Outline, Integer>(this.rows.size());
+			for (String name : cells.keySet()) {
+				Cell cell = (Cell) cells.get(name);
+				if (cell != null) {
+					for (Integer frame : cell.getListOutlinesFrame()) {
+						Outline outline = cell.getOutline(frame);
+						rows.put(outline, outlines.size());
+						outlines.add(outline);
+					}
+				}
+			}
+			this.outlines = outlines;
+			this.rows = rows;
+			fireTableDataChanged();
+		}
+
+		// Inserts, removes or updates the rows of the changed outlines
+		public void update(Collection<Outline> changed) {
+			for (Outline outline : changed) {
+				Integer row = this.rows.get(outline);
+				if (contains(outline)) {
+					if (row == null) {
+						int n = this.outlines.size();
+						this.rows.put(outline, n);
+						this.outlines.add(outline);
+						fireTableRowsInserted(n, n);
+					}
+					else {
+						fireTableRowsUpdated(row, row);
+					}
+				}
+				else if (row != null) {
+					remove(row);
+				}
+			}
+		}
+
+		// The rows after the removed one move up by one
+		private void remove(int row) {
+			this.rows.remove(this.outlines.remove(row));
+			for (int i = row; i < this.outlines.size(); i++) {
+				this.rows.put(this.outlines.get(i), i);
+			}
+			fireTableRowsDeleted(row, row);
+		}
+
+		private boolean contains(Outline outline) {
+			Cell cell = Supervisor.cells.getCell(outline.cell);
+			return (cell != null) && (cell.getOutline(outline.getFrame()) == outline);
+		}
+
+		public Outline getOutline(int row) {
+			return this.outlines.get(row);
+		}
+
+		public int indexOf(Outline outline) {
+			Integer row = this.rows.get(outline);
+			return row == null ? -1 : row.intValue();
+		}
+
+		public int getRowCount() {
+			return this.outlines.size();
+		}
+
+		public int getColumnCount() {
+			return this.headers.length;
+		}
+
+		public String getColumnName(int col) {
+			return this.headers[col];
+		}
+
+		public Object getValueAt(int row, int col) {
+			Outline outline = this.outlines.get(row);
+			if (col == 0) {
+				return outline.getCellName();
+			}
+			if (col == 1) {
+				return outline.getClassName();
+			}
+			return Tools.frame(outline.getFrame());
+		}
+	}
 }
@@ -53,6 +53,7 @@ import javax.swing.JTextField;
 
 import additionaluserinterface.GridPanel;
 import additionaluserinterface.SpinnerInteger;
+import celllineagetracer.ModelListener;
 import celllineagetracer.Supervisor;
 import ij.IJ;
 import ij.gui.GUI;
@@ -163,7 +164,11 @@ public class PixelClassDialog extends JDialog implements ActionListener {
 					klass.setOuterContour(this.szeOuter.get(), this.spnOuter.get());
 				}
 				Supervisor.classes.put(name, klass);
-				this.supervisor.updateAll(null, true);
+				if (Supervisor.journal != null) {
+					Supervisor.journal.putClass(name, klass);
+				}
+				this.supervisor.fireChanged(ModelListener.CLASSES);
+				this.supervisor.select(null);
 			}
 			dispose();
 		}
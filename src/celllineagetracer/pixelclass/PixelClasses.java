@@ -34,7 +34,48 @@
 
 package celllineagetracer.pixelclass;
 
+import java.util.Arrays;
 import java.util.HashMap;
 
+import celllineagetracer.NameRegistry;
+
+// The classes by name, also reachable by the id of their name
 public class PixelClasses extends HashMap<String, PixelClass> {
+	public static final NameRegistry names = new NameRegistry();
+	private PixelClass[] classes = new PixelClass[16];
+
+	public static int getId(String name) {
+		return names.getId(name);
+	}
+
+	public static String getName(int id) {
+		return names.getName(id);
+	}
+
+	public PixelClass getPixelClass(int id) {
+		return (id >= 0) && (id < this.classes.length) ? this.classes[id] : null;
+	}
+
+	public PixelClass put(String name, PixelClass klass) {
+		PixelClass previous = super.put(name, klass);
+		int id = names.getId(name);
+		if (id >= this.classes.length) {
+			this.classes = Arrays.copyOf(this.classes, Math.max(2 * this.classes.length, id + 1));
+		}
+		this.classes[id] = klass;
+		return previous;
+	}
+
+	public PixelClass remove(Object name) {
+		PixelClass klass = super.remove(name);
+		if (klass != null) {
+			this.classes[names.findId((String) name)] = null;
+		}
+		return klass;
+	}
+
+	public void clear() {
+		Arrays.fill(this.classes, null);
+		super.clear();
+	}
 }
@@ -94,6 +94,5 @@ public class PixelClassesPanel extends JPanel implements ActionListener {
 				this.supervisor.deleteClass(name);
 			}
 		}
-		this.supervisor.updateAll(null, true);
 	}
 }
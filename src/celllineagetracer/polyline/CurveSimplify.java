@@ -65,6 +65,56 @@ public class CurveSimplify {
 		return simplifyDouglasPeucker(points, sqTolerance);
 	}
 
+	// Douglas-Peucker of highest quality on the interleaved coordinates of a
+	// polyline, same result as simplify(points, tolerance, true)
+	public Polyline simplify(double[] xy, int n, double tolerance) {
+		if (n < 2) {
+			return new Polyline();
+		}
+		double sqTolerance = tolerance * tolerance;
+		BitSet bitSet = new BitSet(n);
+		bitSet.set(0);
+		bitSet.set(n - 1);
+
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		stack[top++] = n - 1;
+		while (top > 0) {
+			int last = stack[--top];
+			int first = stack[--top];
+
+			int index = -1;
+			double maxSqDist = 0.0D;
+			for (int i = first + 1; i < last; i++) {
+				double sqDist = getSquareSegmentDistance(xy[2 * i], xy[2 * i + 1], xy[2 * first], xy[2 * first + 1],
+						xy[2 * last], xy[2 * last + 1]);
+				if (sqDist > maxSqDist) {
+					index = i;
+					maxSqDist = sqDist;
+				}
+			}
+			if (maxSqDist > sqTolerance) {
+				bitSet.set(index);
+				if (top + 4 > stack.length) {
+					int[] grow = new int[2 * stack.length];
+					System.arraycopy(stack, 0, grow, 0, top);
+					stack = grow;
+				}
+				stack[top++] = first;
+				stack[top++] = index;
+				stack[top++] = index;
+				stack[top++] = last;
+			}
+		}
+		Polyline newPoints = new Polyline();
+		newPoints.ensureCapacity(bitSet.cardinality());
+		for (int index = bitSet.nextSetBit(0); index >= 0; index = bitSet.nextSetBit(index + 1)) {
+			newPoints.add(xy[2 * index], xy[2 * index + 1]);
+		}
+		return newPoints;
+	}
+
 	private Point2D.Double[] simplifyRadialDistance(Point2D.Double[] points, double sqTolerance) {
 		Point2D.Double point = null;
 		Point2D.Double prevPoint = points[0];
@@ -133,13 +183,10 @@ public class CurveSimplify {
 	}
 
 	public double getSquareSegmentDistance(Point2D.Double p0, Point2D.Double p1, Point2D.Double p2) {
-		double x1 = p1.getX();
-		double y1 = p1.getY();
-		double x2 = p2.getX();
-		double y2 = p2.getY();
-		double x0 = p0.getX();
-		double y0 = p0.getY();
+		return getSquareSegmentDistance(p0.getX(), p0.getY(), p1.getX(), p1.getY(), p2.getX(), p2.getY());
+	}
 
+	private static double getSquareSegmentDistance(double x0, double y0, double x1, double y1, double x2, double y2) {
 		double dx = x2 - x1;
 		double dy = y2 - y1;
 		if ((dx != 0.0D) || (dy != 0.0D)) {
@@ -0,0 +1,263 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package celllineagetracer.polyline;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Shape descriptors of the closed polygon of a polyline, computed from its
+// vertices with the Green's theorem, without any pixel access.
+public class Moments
+{
+  public static final String[] HEADERS = { "PolyArea", "XC", "YC", "Perimeter", "Major", "Minor", "Angle", "Eccentricity", "Solidity" };
+  private double area = 0.0D;
+  private double xc = 0.0D;
+  private double yc = 0.0D;
+  private double perimeter = 0.0D;
+  private double mu20 = 0.0D;
+  private double mu02 = 0.0D;
+  private double mu11 = 0.0D;
+  private double hullArea = 0.0D;
+  
+  public Moments(Polyline polyline)
+  {
+    int n = polyline.size();
+    double[] xy = polyline.coordinates();
+    double[] x = new double[n];
+    double[] y = new double[n];
+    for (int i = 0; i < n; i++)
+    {
+      x[i] = xy[(2 * i)];
+      y[i] = xy[(2 * i + 1)];
+    }
+    compute(x, y, n);
+  }
+  
+  public Moments(double[] x, double[] y, int n)
+  {
+    compute(x, y, n);
+  }
+  
+  private void compute(double[] x, double[] y, int n)
+  {
+    if (n == 0) {
+      return;
+    }
+    // Origin moved to the first vertex to limit the cancellation errors
+    double ox = x[0];
+    double oy = y[0];
+    double a = 0.0D;
+    double sx = 0.0D;
+    double sy = 0.0D;
+    double sxx = 0.0D;
+    double syy = 0.0D;
+    double sxy = 0.0D;
+    double p = 0.0D;
+    for (int i = 0; i < n; i++)
+    {
+      int j = (i + 1) % n;
+      double x1 = x[i] - ox;
+      double y1 = y[i] - oy;
+      double x2 = x[j] - ox;
+      double y2 = y[j] - oy;
+      double cross = x1 * y2 - x2 * y1;
+      a += cross;
+      sx += (x1 + x2) * cross;
+      sy += (y1 + y2) * cross;
+      sxx += (x1 * x1 + x1 * x2 + x2 * x2) * cross;
+      syy += (y1 * y1 + y1 * y2 + y2 * y2) * cross;
+      sxy += (x1 * y2 + 2.0D * x1 * y1 + 2.0D * x2 * y2 + x2 * y1) * cross;
+      p += Math.sqrt((x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1));
+    }
+    this.perimeter = p;
+    a *= 0.5D;
+    if (a == 0.0D)
+    {
+      Point2D.Double cog = polylineMean(x, y, n);
+      this.xc = cog.x;
+      this.yc = cog.y;
+      return;
+    }
+    double cx = sx / (6.0D * a);
+    double cy = sy / (6.0D * a);
+    this.area = Math.abs(a);
+    this.xc = ox + cx;
+    this.yc = oy + cy;
+    this.mu20 = sxx / (12.0D * a) - cx * cx;
+    this.mu02 = syy / (12.0D * a) - cy * cy;
+    this.mu11 = sxy / (24.0D * a) - cx * cy;
+    this.hullArea = hullArea(x, y, n);
+  }
+  
+  private static Point2D.Double polylineMean(double[] x, double[] y, int n)
+  {
+    double xg = 0.0D;
+    double yg = 0.0D;
+    for (int i = 0; i < n; i++)
+    {
+      xg += x[i];
+      yg += y[i];
+    }
+    return new Point2D.Double(xg / n, yg / n);
+  }
+  
+  // Monotone chain on the vertices sorted by x then y
+  private static double hullArea(double[] x, double[] y, int n)
+  {
+    Point2D.Double[] pts = new Point2D.Double[n];
+    for (int i = 0; i < n; i++) {
+      pts[i] = new Point2D.Double(x[i], y[i]);
+    }
+    Arrays.sort(pts, new Comparator<Point2D.Double>()
+    {
+      public int compare(Point2D.Double p1, Point2D.Double p2)
+      {
+        return p1.x != p2.x ? Double.compare(p1.x, p2.x) : Double.compare(p1.y, p2.y);
+      }
+    });
+    Point2D.Double[] hull = new Point2D.Double[2 * n];
+    int k = 0;
+    for (int i = 0; i < n; i++)
+    {
+      while ((k >= 2) && (turn(hull[(k - 2)], hull[(k - 1)], pts[i]) <= 0.0D)) {
+        k--;
+      }
+      hull[(k++)] = pts[i];
+    }
+    int lower = k + 1;
+    for (int i = n - 2; i >= 0; i--)
+    {
+      while ((k >= lower) && (turn(hull[(k - 2)], hull[(k - 1)], pts[i]) <= 0.0D)) {
+        k--;
+      }
+      hull[(k++)] = pts[i];
+    }
+    double a = 0.0D;
+    for (int i = 0; i < k - 1; i++) {
+      a += hull[i].x * hull[(i + 1)].y - hull[(i + 1)].x * hull[i].y;
+    }
+    return Math.abs(0.5D * a);
+  }
+  
+  private static double turn(Point2D.Double o, Point2D.Double a, Point2D.Double b)
+  {
+    return (a.x - o.x) * (b.y - o.y) - (a.y - o.y) * (b.x - o.x);
+  }
+  
+  public double getArea()
+  {
+    return this.area;
+  }
+  
+  public Point2D.Double getCentroid()
+  {
+    return new Point2D.Double(this.xc, this.yc);
+  }
+  
+  public double getPerimeter()
+  {
+    return this.perimeter;
+  }
+  
+  // Central second moments normalized by the area
+  public double getMu20()
+  {
+    return this.mu20;
+  }
+  
+  public double getMu02()
+  {
+    return this.mu02;
+  }
+  
+  public double getMu11()
+  {
+    return this.mu11;
+  }
+  
+  private double getLambda(double sign)
+  {
+    double m = 0.5D * (this.mu20 + this.mu02);
+    double d = Math.sqrt(0.25D * (this.mu20 - this.mu02) * (this.mu20 - this.mu02) + this.mu11 * this.mu11);
+    return Math.max(0.0D, m + sign * d);
+  }
+  
+  // Axes of the ellipse having the same second moments
+  public double getMajor()
+  {
+    return 4.0D * Math.sqrt(getLambda(1.0D));
+  }
+  
+  public double getMinor()
+  {
+    return 4.0D * Math.sqrt(getLambda(-1.0D));
+  }
+  
+  // Angle of the major axis in degrees [0, 180[, counterclockwise as in ImageJ
+  public double getOrientation()
+  {
+    double angle = Math.toDegrees(0.5D * Math.atan2(-2.0D * this.mu11, this.mu20 - this.mu02));
+    return angle < 0.0D ? angle + 180.0D : angle + 0.0D;
+  }
+  
+  public double getEccentricity()
+  {
+    double l1 = getLambda(1.0D);
+    if (l1 <= 0.0D) {
+      return 0.0D;
+    }
+    return Math.sqrt(Math.max(0.0D, 1.0D - getLambda(-1.0D) / l1));
+  }
+  
+  public double getConvexHullArea()
+  {
+    return this.hullArea;
+  }
+  
+  public double getSolidity()
+  {
+    if (this.hullArea <= 0.0D) {
+      return 0.0D;
+    }
+    return this.area / this.hullArea;
+  }
+  
+  // Values in the order of HEADERS
+  public double[] getValues()
+  {
+    return new double[] { this.area, this.xc, this.yc, this.perimeter, getMajor(), getMinor(), getOrientation(), getEccentricity(), getSolidity() };
+  }
+}
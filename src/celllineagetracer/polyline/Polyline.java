@@ -42,17 +42,182 @@ import java.awt.Stroke;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.RandomAccess;
 
 import ij.gui.ImageCanvas;
 
+// The coordinates are packed in one array, x and y interleaved. The list of
+// Node is a view for the callers: get() returns a copy, a node is changed
+// in place with setNode(). Every change of the coordinates increments the
+// version, the geometry derived from the polyline is kept for a version.
 public class Polyline
-  extends ArrayList<Node>
+  extends AbstractList<Node>
+  implements RandomAccess
 {
+  private double[] xy = new double[32];
+  private boolean[] starts = null;
+  private int n = 0;
+  private int version = 0;
+  private volatile boolean shared = false;
+  
+  public int size()
+  {
+    return this.n;
+  }
+  
+  // The number of nodes held without growing the coordinates
+  public int capacity()
+  {
+    return this.xy.length / 2;
+  }
+  
+  public Node get(int i)
+  {
+    check(i, this.n);
+    Node node = new Node(this.xy[(2 * i)], this.xy[(2 * i + 1)]);
+    if ((this.starts != null) && (this.starts[i])) {
+      node.setStart(true);
+    }
+    return node;
+  }
+  
+  public int getVersion()
+  {
+    return this.version;
+  }
+  
+  public double getX(int i)
+  {
+    check(i, this.n);
+    return this.xy[(2 * i)];
+  }
+  
+  public double getY(int i)
+  {
+    check(i, this.n);
+    return this.xy[(2 * i + 1)];
+  }
+  
+  public void setNode(int i, double x, double y)
+  {
+    check(i, this.n);
+    this.xy[(2 * i)] = x;
+    this.xy[(2 * i + 1)] = y;
+    this.version += 1;
+  }
+  
+  public boolean starts(int i)
+  {
+    check(i, this.n);
+    return (this.starts != null) && (this.starts[i]);
+  }
+  
+  public Node set(int i, Node node)
+  {
+    Node previous = get(i);
+    setNode(i, node.x, node.y);
+    setStart(i, node.starts());
+    return previous;
+  }
+  
+  public void add(int i, Node node)
+  {
+    check(i, this.n + 1);
+    insert(i, node.x, node.y);
+    if (node.starts()) {
+      setStart(i, true);
+    }
+  }
+  
   public void add(double x, double y)
   {
-    add(new Node(x, y));
+    insert(this.n, x, y);
+  }
+  
+  public Node remove(int i)
+  {
+    Node previous = get(i);
+    System.arraycopy(this.xy, 2 * i + 2, this.xy, 2 * i, 2 * (this.n - i - 1));
+    if (this.starts != null) {
+      System.arraycopy(this.starts, i + 1, this.starts, i, this.n - i - 1);
+      this.starts[(this.n - 1)] = false;
+    }
+    this.n -= 1;
+    this.modCount += 1;
+    this.version += 1;
+    return previous;
+  }
+  
+  public void clear()
+  {
+    if (this.starts != null) {
+      for (int i = 0; i < this.n; i++) {
+        this.starts[i] = false;
+      }
+    }
+    this.n = 0;
+    this.modCount += 1;
+    this.version += 1;
+  }
+  
+  public void ensureCapacity(int capacity)
+  {
+    if (2 * capacity > this.xy.length)
+    {
+      double[] grow = new double[Math.max(2 * capacity, 2 * this.xy.length)];
+      System.arraycopy(this.xy, 0, grow, 0, 2 * this.n);
+      this.xy = grow;
+      if (this.starts != null)
+      {
+        boolean[] starts = new boolean[grow.length / 2];
+        System.arraycopy(this.starts, 0, starts, 0, this.n);
+        this.starts = starts;
+      }
+    }
+  }
+  
+  // The interleaved coordinates, valid up to 2 * size()
+  double[] coordinates()
+  {
+    return this.xy;
+  }
+  
+  private void insert(int i, double x, double y)
+  {
+    ensureCapacity(this.n + 1);
+    if (i < this.n)
+    {
+      System.arraycopy(this.xy, 2 * i, this.xy, 2 * i + 2, 2 * (this.n - i));
+      if (this.starts != null)
+      {
+        System.arraycopy(this.starts, i, this.starts, i + 1, this.n - i);
+        this.starts[i] = false;
+      }
+    }
+    this.xy[(2 * i)] = x;
+    this.xy[(2 * i + 1)] = y;
+    this.n += 1;
+    this.modCount += 1;
+    this.version += 1;
+  }
+  
+  private void setStart(int i, boolean start)
+  {
+    if ((this.starts == null) && (!start)) {
+      return;
+    }
+    if (this.starts == null) {
+      this.starts = new boolean[this.xy.length / 2];
+    }
+    this.starts[i] = start;
+  }
+  
+  private static void check(int i, int n)
+  {
+    if ((i < 0) || (i >= n)) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + n);
+    }
   }
   
   public void drawDash(Graphics g, Color color, ImageCanvas canvas)
@@ -66,9 +231,9 @@ public class Polyline
       return;
     }
     Path2D polygon = new Path2D.Double();
-    polygon.moveTo(canvas.screenXD(((Node)get(0)).x), canvas.screenYD(((Node)get(0)).y));
+    polygon.moveTo(canvas.screenXD(this.xy[0]), canvas.screenYD(this.xy[1]));
     for (int i = 1; i < n - 1; i++) {
-      polygon.lineTo(canvas.screenXD(((Node)get(i)).x), canvas.screenYD(((Node)get(i)).y));
+      polygon.lineTo(canvas.screenXD(this.xy[(2 * i)]), canvas.screenYD(this.xy[(2 * i + 1)]));
     }
     g2.draw(polygon);
     g2.setStroke(new BasicStroke());
@@ -83,11 +248,8 @@ public class Polyline
     if (n <= 1) {
       return;
     }
-    for (int i = 0; i < n - 1; i++)
-    {
-      Node pt1 = (Node)get(i);
-      Node pt2 = (Node)get(i + 1);
-      g.drawLine(canvas.screenXD(pt1.x), canvas.screenYD(pt1.y), canvas.screenXD(pt2.x), canvas.screenYD(pt2.y));
+    for (int i = 0; i < n - 1; i++) {
+      drawSegment(g, i, i + 1, canvas);
     }
     g2.setStroke(new BasicStroke());
   }
@@ -99,11 +261,8 @@ public class Polyline
     if (n <= 1) {
       return;
     }
-    for (int i = 0; i < n - 1; i++)
-    {
-      Node pt1 = (Node)get(i);
-      Node pt2 = (Node)get(i + 1);
-      g.drawLine(canvas.screenXD(pt1.x), canvas.screenYD(pt1.y), canvas.screenXD(pt2.x), canvas.screenYD(pt2.y));
+    for (int i = 0; i < n - 1; i++) {
+      drawSegment(g, i, i + 1, canvas);
     }
   }
   
@@ -115,79 +274,106 @@ public class Polyline
     if (n <= 1) {
       return;
     }
-    for (int i = 0; i < n - 1; i++)
-    {
-      Node pt1 = (Node)get(i);
-      Node pt2 = (Node)get(i + 1);
-      g2.drawLine(canvas.screenXD(pt1.x), canvas.screenYD(pt1.y), canvas.screenXD(pt2.x), canvas.screenYD(pt2.y));
+    for (int i = 0; i < n - 1; i++) {
+      drawSegment(g2, i, i + 1, canvas);
     }
-    Node pt1 = (Node)get(0);
-    Node pt2 = (Node)get(n - 1);
-    g2.drawLine(canvas.screenXD(pt1.x), canvas.screenYD(pt1.y), canvas.screenXD(pt2.x), canvas.screenYD(pt2.y));
+    drawSegment(g2, 0, n - 1, canvas);
+  }
+  
+  private void drawSegment(Graphics g, int i, int j, ImageCanvas canvas)
+  {
+    g.drawLine(canvas.screenXD(this.xy[(2 * i)]), canvas.screenYD(this.xy[(2 * i + 1)]), canvas.screenXD(this.xy[(2 * j)]), canvas.screenYD(this.xy[(2 * j + 1)]));
   }
   
   public void drawNodes(Graphics g, Color color, ImageCanvas canvas)
   {
     g.setColor(color);
     int n = size();
-    for (int i = 0; i < n; i++)
-    {
-      Point2D.Double pt1 = (Point2D.Double)get(i);
-      g.drawOval(canvas.screenXD(pt1.x - 2.0D), canvas.screenYD(pt1.y - 2.0D), 5, 5);
+    for (int i = 0; i < n; i++) {
+      g.drawOval(canvas.screenXD(this.xy[(2 * i)] - 2.0D), canvas.screenYD(this.xy[(2 * i + 1)] - 2.0D), 5, 5);
     }
   }
   
+  // Set when several outlines refer to this polyline, the first of them to
+  // edit it works on a copy
+  public void share()
+  {
+    this.shared = true;
+  }
+  
+  public boolean isShared()
+  {
+    return this.shared;
+  }
+  
+  public Polyline copy()
+  {
+    Polyline p = new Polyline();
+    p.ensureCapacity(this.n);
+    System.arraycopy(this.xy, 0, p.xy, 0, 2 * this.n);
+    p.n = this.n;
+    return p;
+  }
+  
   public Point2D.Double computeCoG()
   {
     double xg = 0.0D;
     double yg = 0.0D;
-    for (Node node : this)
+    for (int i = 0; i < 2 * this.n; i += 2)
     {
-      xg += node.x;
-      yg += node.y;
+      xg += this.xy[i];
+      yg += this.xy[(i + 1)];
     }
-    return new Point2D.Double(xg / size(), yg / size());
+    return new Point2D.Double(xg / this.n, yg / this.n);
   }
   
   public void translate(double dx, double dy)
   {
-    for (Node node : this)
+    for (int i = 0; i < 2 * this.n; i += 2)
     {
-      node.x += dx;
-      node.y += dy;
+      this.xy[i] += dx;
+      this.xy[(i + 1)] += dy;
     }
+    this.version += 1;
   }
   
   public Polyline resample(int nsamples)
   {
     double fineSampling = 2.0D;
+    double[] a = this.xy;
     Polyline u = new Polyline();
     int nseg = size();
     for (int i = 0; i < nseg - 1; i++)
     {
-      double dist = ((Node)get(i + 1)).distance((Point2D)get(i));
+      double x0 = a[(2 * i)];
+      double y0 = a[(2 * i + 1)];
+      double x1 = a[(2 * i + 2)];
+      double y1 = a[(2 * i + 3)];
+      double dist = Point2D.distance(x1, y1, x0, y0);
       int np = (int)(fineSampling * dist);
       if (np > 0)
       {
-        double dx = (((Node)get(i + 1)).x - ((Node)get(i)).x) / np;
-        double dy = (((Node)get(i + 1)).y - ((Node)get(i)).y) / np;
+        double dx = (x1 - x0) / np;
+        double dy = (y1 - y0) / np;
+        u.ensureCapacity(u.n + np);
         for (int k = 0; k < np; k++) {
-          u.add(new Node(((Node)get(i)).x + k * dx, ((Node)get(i)).y + k * dy));
+          u.insert(u.n, x0 + k * dx, y0 + k * dy);
         }
       }
       else
       {
-        u.add((Node)get(i));
+        u.insert(u.n, x0, y0);
       }
     }
     Point2D.Double cog = u.computeCoG();
     int nu = u.size();
+    double[] b = u.xy;
     double min = 1e300;
     int imin = -1;
     for (int i = 0; i < nu; i++) {
-      if (cog.x - ((Node)u.get(i)).x > 1.0D)
+      if (cog.x - b[(2 * i)] > 1.0D)
       {
-        double dx = Math.abs(cog.y - ((Node)u.get(i)).y);
+        double dx = Math.abs(cog.y - b[(2 * i + 1)]);
         if (dx < min)
         {
           min = dx;
@@ -195,21 +381,14 @@ public class Polyline
         }
       }
     }
-    Polyline uo = new Polyline();
-    if (imin >= 0)
-    {
-      for (int i = imin; i < nu; i++) {
-        uo.add((Node)u.get(i));
-      }
-      for (int i = 0; i < imin; i++) {
-        uo.add((Node)u.get(i));
-      }
-    }
-    double step = uo.size() / nsamples;
+    // Starts at the node found, the circular shift is done on the indices
+    int nuo = imin >= 0 ? nu : 0;
+    double step = nuo / nsamples;
     Polyline p = new Polyline();
-    int nuo = uo.size();
-    for (double i = 0.0D; i < nuo; i += step) {
-      p.add((Node)uo.get((int)Math.floor(i)));
+    for (double i = 0.0D; i < nuo; i += step)
+    {
+      int k = (imin + (int)Math.floor(i)) % nu;
+      p.insert(p.n, b[(2 * k)], b[(2 * k + 1)]);
     }
     return p;
   }
@@ -222,7 +401,7 @@ public class Polyline
     }
     double d = 0.0D;
     for (int i = 1; i < n; i++) {
-      d += ((Node)get(i - 1)).distance((Point2D)get(i));
+      d += Point2D.distance(this.xy[(2 * i - 2)], this.xy[(2 * i - 1)], this.xy[(2 * i)], this.xy[(2 * i + 1)]);
     }
     return d;
   }
@@ -233,10 +412,9 @@ public class Polyline
     if (size() <= 1) {
       return path;
     }
-    Point2D.Double pt = (Point2D.Double)get(0);
-    path.moveTo(pt.x, pt.y);
+    path.moveTo(this.xy[0], this.xy[1]);
     for (int i = 1; i < size(); i++) {
-      path.lineTo(((Node)get(i)).x, ((Node)get(i)).y);
+      path.lineTo(this.xy[(2 * i)], this.xy[(2 * i + 1)]);
     }
     return path;
   }
@@ -247,16 +425,7 @@ public class Polyline
     if (n == 0) {
       return new Polyline();
     }
-    Point2D.Double[] list = new Point2D.Double[n];
-    for (int i = 0; i < n; i++)
-    {
-      Point2D.Double pt = (Point2D.Double)get(i);
-      list[i] = new Point2D.Double(pt.x, pt.y);
-    }
-    CurveSimplify simplify = new CurveSimplify(new Point2D.Double[n]);
-    
-    Polyline simplified = simplify.simplify(list, tolerance, true);
-    return simplified;
+    return new CurveSimplify(null).simplify(this.xy, n, tolerance);
   }
   
   public Polyline smooth(int win)
@@ -265,42 +434,41 @@ public class Polyline
     if (n == 0) {
       return this;
     }
+    double[] a = this.xy;
     int size = 2 * win + 1;
     Polyline s = new Polyline();
-    s.add(((Node)get(0)).x, ((Node)get(0)).y);
+    s.ensureCapacity(n);
+    s.insert(0, a[0], a[1]);
     if (size > (n - 1) / 2)
     {
-      s.add((Node)get(n - 1));
+      s.insert(s.n, a[(2 * n - 2)], a[(2 * n - 1)]);
       return s;
     }
     for (int i = 1; i < n - 1; i++)
     {
       int norm = size;
-      Point2D.Double pt = (Point2D.Double)get(i);
-      double x = size * pt.x;
-      double y = size * pt.y;
+      double x = size * a[(2 * i)];
+      double y = size * a[(2 * i + 1)];
       for (int k = 1; k < size; k++)
       {
         int kk = i - size + k;
         if (kk >= 0)
         {
-          Point2D.Double pk = (Point2D.Double)get(kk);
-          x += k * pk.x;
-          y += k * pk.y;
+          x += k * a[(2 * kk)];
+          y += k * a[(2 * kk + 1)];
           norm += k;
         }
         kk = i + size - k;
         if (kk < n)
         {
-          Point2D.Double pk = (Point2D.Double)get(kk);
-          x += k * pk.x;
-          y += k * pk.y;
+          x += k * a[(2 * kk)];
+          y += k * a[(2 * kk + 1)];
           norm += k;
         }
       }
-      s.add(x / norm, y / norm);
+      s.insert(s.n, x / norm, y / norm);
     }
-    s.add((Node)get(n - 1));
+    s.insert(s.n, a[(2 * n - 2)], a[(2 * n - 1)]);
     return s;
   }
   
@@ -309,7 +477,27 @@ public class Polyline
     if (isClockwise()) {
       return;
     }
-    Collections.reverse(this);
+    int i = 0;
+    int j = this.n - 1;
+    while (i < j)
+    {
+      double x = this.xy[(2 * i)];
+      double y = this.xy[(2 * i + 1)];
+      this.xy[(2 * i)] = this.xy[(2 * j)];
+      this.xy[(2 * i + 1)] = this.xy[(2 * j + 1)];
+      this.xy[(2 * j)] = x;
+      this.xy[(2 * j + 1)] = y;
+      if (this.starts != null)
+      {
+        boolean s = this.starts[i];
+        this.starts[i] = this.starts[j];
+        this.starts[j] = s;
+      }
+      i++;
+      j--;
+    }
+    this.modCount += 1;
+    this.version += 1;
   }
   
   private boolean isClockwise()
@@ -318,9 +506,8 @@ public class Polyline
     int n = size();
     for (int i = 0; i < n; i++)
     {
-      Node v1 = (Node)get(i);
-      Node v2 = (Node)get((i + 1) % n);
-      sum += (v2.x - v1.x) * (v2.y + v1.y);
+      int j = (i + 1) % n;
+      sum += (this.xy[(2 * j)] - this.xy[(2 * i)]) * (this.xy[(2 * j + 1)] + this.xy[(2 * i + 1)]);
     }
     return sum > 0.0D;
   }
@@ -0,0 +1,80 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package celllineagetracer.raster;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ExportEngine {
+
+	// Renders all the frames of the snapshot in parallel, one frame per task.
+	// The renderers only read the snapshot and the stack, never the display.
+	public static void run(ExportSnapshot snapshot, FrameRenderer renderer) {
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		try {
+			pool.invoke(new FrameTask(snapshot, renderer, 1, snapshot.getNFrames() + 1));
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	private static class FrameTask extends RecursiveAction {
+		private ExportSnapshot snapshot;
+		private FrameRenderer renderer;
+		private int from;
+		private int to;
+
+		public FrameTask(ExportSnapshot snapshot, FrameRenderer renderer, int from, int to) {
+			this.snapshot = snapshot;
+			this.renderer = renderer;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (this.to - this.from <= 1) {
+				if (this.to > this.from) {
+					this.renderer.render(this.from, this.snapshot.getShapes(this.from));
+				}
+				return;
+			}
+			int middle = (this.from + this.to) / 2;
+			invokeAll(new FrameTask(this.snapshot, this.renderer, this.from, middle),
+					new FrameTask(this.snapshot, this.renderer, middle, this.to));
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package celllineagetracer.raster;
+
+import java.awt.Color;
+import java.awt.Polygon;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import celllineagetracer.Supervisor;
+import celllineagetracer.outline.Outline;
+import celllineagetracer.pixelclass.PixelClass;
+
+public class ExportSnapshot {
+
+	public static class Shape {
+		public final int[] xpoints;
+		public final int[] ypoints;
+		public final int npoints;
+		public final int frame;
+		public final Color cellColor;
+		public final Color classColor;
+		public final PixelClass klass;
+
+		private Shape(Outline outline) {
+			Polygon polygon = outline.getPolygon();
+			this.npoints = polygon.npoints;
+			this.xpoints = Arrays.copyOf(polygon.xpoints, polygon.npoints);
+			this.ypoints = Arrays.copyOf(polygon.ypoints, polygon.npoints);
+			this.frame = outline.getFrame();
+			this.cellColor = outline.getCellColor();
+			this.classColor = outline.getClassColor();
+			PixelClass pc = Supervisor.classes.getPixelClass(outline.klass);
+			if (pc == null) {
+				this.klass = null;
+			}
+			else {
+				this.klass = new PixelClass(pc.hue, pc.valueRegion);
+				this.klass.setInnerContour(pc.sizeInner, pc.valueInner);
+				this.klass.setOuterContour(pc.sizeOuter, pc.valueOuter);
+			}
+		}
+
+		public Spans fill(int nx, int ny) {
+			return ScanlineFill.fill(this.xpoints, this.ypoints, this.npoints, nx, ny);
+		}
+	}
+
+	private ArrayList<ArrayList<Shape>> frames = new ArrayList<ArrayList<Shape>>();
+
+	public ExportSnapshot(int nt) {
+		for (int frame = 1; frame <= nt; frame++) {
+			ArrayList<Shape> shapes = new ArrayList<Shape>();
+			for (Outline outline : Supervisor.getOutlinesAtFrame(frame)) {
+				shapes.add(new Shape(outline));
+			}
+			this.frames.add(shapes);
+		}
+	}
+
+	public int getNFrames() {
+		return this.frames.size();
+	}
+
+	public ArrayList<Shape> getShapes(int frame) {
+		return this.frames.get(frame - 1);
+	}
+}
@@ -32,16 +32,11 @@
  * ICLT. If not, see <http://www.gnu.org/licenses/>.
  */
 
-package celllineagetracer.cell;
 
-public class TrajectoryPoint {
-	public double x;
-	public double y;
-	public int frame;
+package celllineagetracer.raster;
 
-	public TrajectoryPoint(double x, double y, int frame) {
-		this.x = x;
-		this.y = y;
-		this.frame = frame;
-	}
+import java.util.ArrayList;
+
+public interface FrameRenderer {
+	public void render(int frame, ArrayList<ExportSnapshot.Shape> shapes);
 }
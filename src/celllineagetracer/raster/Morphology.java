@@ -0,0 +1,130 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package celllineagetracer.raster;
+
+public class Morphology {
+
+	// Marks the pixels of a w x h grid that lie within the structuring element
+	// of half-size 'size' of at least one pixel of the mask. The element is the
+	// one of the former disc(2 * size + 1): the ellipse dx^2/a + dy^2/b < 1
+	// cropped to |dx|, |dy| <= size. The test is done with a column distance
+	// (cropped to size) followed by a lower envelope of parabolas on the rows,
+	// so the cost does not depend on the size.
+	public static boolean[] dilate(boolean[] mask, int w, int h, int size) {
+		boolean[] out = new boolean[w * h];
+		if (size < 1) {
+			System.arraycopy(mask, 0, out, 0, w * h);
+			return out;
+		}
+		double n = 2 * size + 1;
+		double a = n / 2.0D * (n / 2.0D);
+		double b = n / 2.0D * n;
+		int inf = Integer.MAX_VALUE;
+
+		int[] g = new int[w * h];
+		for (int x = 0; x < w; x++) {
+			int last = inf;
+			for (int y = 0; y < h; y++) {
+				int i = y * w + x;
+				if (mask[i]) {
+					last = y;
+				}
+				g[i] = last == inf ? inf : y - last;
+			}
+			last = inf;
+			for (int y = h - 1; y >= 0; y--) {
+				int i = y * w + x;
+				if (mask[i]) {
+					last = y;
+				}
+				if ((last != inf) && (last - y < g[i])) {
+					g[i] = last - y;
+				}
+				if (g[i] > size) {
+					g[i] = inf;
+				}
+			}
+		}
+
+		double ratio = a / b;
+		int[] v = new int[w];
+		double[] z = new double[w + 1];
+		for (int y = 0; y < h; y++) {
+			int row = y * w;
+			int k = -1;
+			for (int q = 0; q < w; q++) {
+				int gq = g[row + q];
+				if (gq == inf) {
+					continue;
+				}
+				double fq = ratio * gq * gq + (double) q * q;
+				double s = Double.NEGATIVE_INFINITY;
+				while (k >= 0) {
+					int r = v[k];
+					int gr = g[row + r];
+					double fr = ratio * gr * gr + (double) r * r;
+					s = (fq - fr) / (2.0D * (q - r));
+					if (s > z[k]) {
+						break;
+					}
+					k--;
+				}
+				if (k < 0) {
+					s = Double.NEGATIVE_INFINITY;
+				}
+				k++;
+				v[k] = q;
+				z[k] = s;
+				z[k + 1] = Double.POSITIVE_INFINITY;
+			}
+			if (k < 0) {
+				continue;
+			}
+			int j = 0;
+			for (int p = 0; p < w; p++) {
+				while (z[j + 1] < p) {
+					j++;
+				}
+				int dx = p - v[j];
+				int dy = g[row + v[j]];
+				if (dx * dx / a + dy * dy / b < 1.0D) {
+					out[row + p] = true;
+				}
+			}
+		}
+		return out;
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package celllineagetracer.raster;
+
+import java.awt.Polygon;
+import java.util.Arrays;
+
+import celllineagetracer.outline.Outline;
+
+public class ScanlineFill {
+
+	public static Spans fill(Outline outline, int nx, int ny) {
+		return fill(outline, nx, ny, false);
+	}
+
+	public static Spans fill(Outline outline, int nx, int ny, boolean centered) {
+		Polygon polygon = outline.getPolygon();
+		return fill(polygon.xpoints, polygon.ypoints, polygon.npoints, nx, ny, centered);
+	}
+
+	public static Spans fill(int[] xp, int[] yp, int n, int nx, int ny) {
+		return fill(xp, yp, n, nx, ny, false);
+	}
+
+	// Even-odd fill clipped to the image. By default the pixels are sampled at
+	// the integer positions with the same crossing test as Polygon.contains(x,
+	// y); centered samples the pixel centers, as the ImageJ polygon masks do
+	// (a center lying exactly on an edge is counted on its left side).
+	public static Spans fill(int[] xp, int[] yp, int n, int nx, int ny, boolean centered) {
+		double shift = centered ? 0.5D : 0.0D;
+		if (n <= 2) {
+			return new Spans(1);
+		}
+		int[] x1 = new int[n];
+		int[] y1 = new int[n];
+		int[] x2 = new int[n];
+		int[] y2 = new int[n];
+		int[] ymin = new int[n];
+		int[] ymax = new int[n];
+		int ne = 0;
+		int lx = xp[n - 1];
+		int ly = yp[n - 1];
+		for (int i = 0; i < n; i++) {
+			int cx = xp[i];
+			int cy = yp[i];
+			if (cy != ly) {
+				boolean up = cy < ly;
+				x1[ne] = up ? cx : lx;
+				y1[ne] = up ? cy : ly;
+				x2[ne] = up ? lx : cx;
+				y2[ne] = up ? ly : cy;
+				ymin[ne] = y1[ne];
+				ymax[ne] = y2[ne];
+				ne++;
+			}
+			lx = cx;
+			ly = cy;
+		}
+		if (ne == 0) {
+			return new Spans(1);
+		}
+
+		// Edge table sorted by the first scanline of each edge
+		long[] table = new long[ne];
+		for (int e = 0; e < ne; e++) {
+			table[e] = ((long) ymin[e] << 32) | e;
+		}
+		Arrays.sort(table);
+		int[] order = new int[ne];
+		for (int e = 0; e < ne; e++) {
+			order[e] = (int) table[e];
+		}
+		int top = ymin[order[0]];
+		int bottom = top;
+		for (int e = 0; e < ne; e++) {
+			bottom = Math.max(bottom, ymax[e]);
+		}
+		int ystart = Math.max(0, top);
+		int yend = Math.min(ny, bottom);
+
+		Spans spans = new Spans(Math.max(1, 2 * (yend - ystart)));
+		int[] active = new int[ne];
+		int[] xs = new int[ne];
+		int na = 0;
+		int next = 0;
+		for (int y = ystart; y < yend; y++) {
+			while ((next < ne) && (ymin[order[next]] <= y)) {
+				active[na++] = order[next++];
+			}
+			int k = 0;
+			for (int a = 0; a < na; a++) {
+				if (ymax[active[a]] > y) {
+					active[k++] = active[a];
+				}
+			}
+			na = k;
+			int m = 0;
+			for (int a = 0; a < na; a++) {
+				int e = active[a];
+				double t = (y + shift - y1[e]) / (y2[e] - y1[e]) * (x2[e] - x1[e]);
+				int x = x1[e] + (centered ? (int) Math.floor(t - 0.5D) + 1 : (int) Math.ceil(t));
+				x = Math.max(Math.min(x1[e], x2[e]), Math.min(Math.max(x1[e], x2[e]), x));
+				int j = m++;
+				while ((j > 0) && (xs[j - 1] > x)) {
+					xs[j] = xs[j - 1];
+					j--;
+				}
+				xs[j] = x;
+			}
+			for (int a = 0; a + 1 < m; a += 2) {
+				int left = Math.max(0, xs[a]);
+				int right = Math.min(nx, xs[a + 1]);
+				spans.add(y, left, right);
+			}
+		}
+		return spans;
+	}
+}
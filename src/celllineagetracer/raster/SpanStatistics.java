@@ -0,0 +1,175 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package celllineagetracer.raster;
+
+import ij.measure.Calibration;
+
+public class SpanStatistics {
+	public static final String[] HEADERS = { "Area", "Mean", "StdDev", "Min", "Max", "IntDen", "RawIntDen", "XM",
+			"YM" };
+
+	private long count = 0;
+	private double sum = 0.0D;
+	private double sumRaw = 0.0D;
+	private double sum2 = 0.0D;
+	private double min = Double.MAX_VALUE;
+	private double max = -Double.MAX_VALUE;
+	private double sumX = 0.0D;
+	private double sumY = 0.0D;
+	private double sumVX = 0.0D;
+	private double sumVY = 0.0D;
+
+	// Accumulates the pixels of a plane of the stack (byte, short, float or
+	// RGB array, as returned by ImageStack.getPixels) covered by the spans.
+	// The calibration table maps the byte and short values, null if the
+	// image has no value calibration.
+	public void add(Spans spans, Object pixels, int nx, float[] cTable) {
+		for (int i = 0; i < spans.size(); i++) {
+			int y = spans.getY(i);
+			int offset = y * nx;
+			for (int x = spans.getStart(i); x < spans.getEnd(i); x++) {
+				double raw = getValue(pixels, offset + x);
+				add(x, y, raw, getValue(pixels, offset + x, cTable));
+			}
+		}
+	}
+
+	// Single pass over the spans for several planes of the same frame, the
+	// geometry is rasterized once for all the channels and slices.
+	public static SpanStatistics[] measure(Spans spans, Object[] planes, int nx, float[] cTable) {
+		int np = planes.length;
+		SpanStatistics[] stats = new SpanStatistics[np];
+		for (int k = 0; k < np; k++) {
+			stats[k] = new SpanStatistics();
+		}
+		for (int i = 0; i < spans.size(); i++) {
+			int y = spans.getY(i);
+			int offset = y * nx;
+			for (int x = spans.getStart(i); x < spans.getEnd(i); x++) {
+				for (int k = 0; k < np; k++) {
+					double raw = getValue(planes[k], offset + x);
+					stats[k].add(x, y, raw, getValue(planes[k], offset + x, cTable));
+				}
+			}
+		}
+		return stats;
+	}
+
+	public static double getValue(Object pixels, int index) {
+		if (pixels instanceof byte[]) {
+			return ((byte[]) pixels)[index] & 0xff;
+		}
+		if (pixels instanceof short[]) {
+			return ((short[]) pixels)[index] & 0xffff;
+		}
+		if (pixels instanceof float[]) {
+			return ((float[]) pixels)[index];
+		}
+		if (pixels instanceof int[]) {
+			int c = ((int[]) pixels)[index];
+			return (((c & 0xff0000) >> 16) + ((c & 0xff00) >> 8) + (c & 0xff)) / 3.0D;
+		}
+		return 0.0D;
+	}
+
+	// The value mapped by the calibration table, as ImageJ measures the
+	// byte and short images, the float and RGB values are kept
+	public static double getValue(Object pixels, int index, float[] cTable) {
+		if (cTable != null) {
+			if (pixels instanceof byte[]) {
+				return cTable[((byte[]) pixels)[index] & 0xff];
+			}
+			if (pixels instanceof short[]) {
+				return cTable[((short[]) pixels)[index] & 0xffff];
+			}
+		}
+		return getValue(pixels, index);
+	}
+
+	public void add(int x, int y, double raw, double v) {
+		double xc = x + 0.5D;
+		double yc = y + 0.5D;
+		this.count++;
+		this.sumRaw += raw;
+		this.sum += v;
+		this.sum2 += v * v;
+		if (v < this.min) {
+			this.min = v;
+		}
+		if (v > this.max) {
+			this.max = v;
+		}
+		this.sumX += xc;
+		this.sumY += yc;
+		this.sumVX += v * xc;
+		this.sumVY += v * yc;
+	}
+
+	public long getCount() {
+		return this.count;
+	}
+
+	// Values in the order of HEADERS, in calibrated units as ImageJ reports
+	// them, the center of mass from the origin of the calibration
+	public double[] getValues(Calibration cal, int ny) {
+		double pw = cal == null ? 1.0D : cal.pixelWidth;
+		double ph = cal == null ? 1.0D : cal.pixelHeight;
+		double[] values = new double[HEADERS.length];
+		if (this.count == 0) {
+			for (int i = 0; i < values.length; i++) {
+				values[i] = Double.NaN;
+			}
+			values[0] = 0.0D;
+			return values;
+		}
+		double n = this.count;
+		double mean = this.sum / n;
+		double var = n > 1 ? (this.sum2 - this.sum * this.sum / n) / (n - 1.0D) : 0.0D;
+		double area = n * pw * ph;
+		double xm = this.sum != 0.0D ? this.sumVX / this.sum : this.sumX / n;
+		double ym = this.sum != 0.0D ? this.sumVY / this.sum : this.sumY / n;
+		values[0] = area;
+		values[1] = mean;
+		values[2] = Math.sqrt(Math.max(0.0D, var));
+		values[3] = this.min;
+		values[4] = this.max;
+		values[5] = area * mean;
+		values[6] = this.sumRaw;
+		values[7] = cal == null ? xm : cal.getX(xm);
+		values[8] = cal == null ? ym : cal.getY(ym, ny);
+		return values;
+	}
+}
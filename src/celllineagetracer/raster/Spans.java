@@ -0,0 +1,122 @@
+/*
+ * Interactive Cell Lineage Tracer (ICLT)
+ * 
+ * Author: Daniel Sage and Chiara Toniolo, EPFL
+ * 
+ * Conditions of use: You are free to use this software for research or
+ * educational purposes. In addition, we expect you to include adequate
+ * citations and acknowledgments whenever you present or publish results that
+ * are based on it.
+ * 
+ * Reference: Book chapter, 2023
+ * Quantification of Mycobacterium tuberculosis growth in cell-based infection 
+ * assays by time-lapse fluorescence microscopy
+ * Chiara Toniolo, Daniel Sage, John D. McKinney, Neeraj Dhar
+ */
+
+/*
+ * Copyright 2014-2023 Biomedical Imaging Group at the EPFL.
+ * 
+ * This file is part of Interactive Cell Lineage Tracer (ICLT).
+ * 
+ * ICLT is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * ICLT is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with
+ * ICLT. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package celllineagetracer.raster;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+public class Spans {
+	private int[] y;
+	private int[] start;
+	private int[] end;
+	private int count = 0;
+
+	public Spans() {
+		this(16);
+	}
+
+	public Spans(int capacity) {
+		capacity = Math.max(1, capacity);
+		this.y = new int[capacity];
+		this.start = new int[capacity];
+		this.end = new int[capacity];
+	}
+
+	public void add(int row, int x0, int x1) {
+		if (x1 <= x0) {
+			return;
+		}
+		if (this.count == this.y.length) {
+			int capacity = 2 * this.count;
+			this.y = Arrays.copyOf(this.y, capacity);
+			this.start = Arrays.copyOf(this.start, capacity);
+			this.end = Arrays.copyOf(this.end, capacity);
+		}
+		this.y[this.count] = row;
+		this.start[this.count] = x0;
+		this.end[this.count] = x1;
+		this.count++;
+	}
+
+	public int size() {
+		return this.count;
+	}
+
+	public int getY(int i) {
+		return this.y[i];
+	}
+
+	public int getStart(int i) {
+		return this.start[i];
+	}
+
+	public int getEnd(int i) {
+		return this.end[i];
+	}
+
+	public int getPixelCount() {
+		int n = 0;
+		for (int i = 0; i < this.count; i++) {
+			n += this.end[i] - this.start[i];
+		}
+		return n;
+	}
+
+	public Rectangle getBounds() {
+		if (this.count == 0) {
+			return new Rectangle();
+		}
+		int xmin = Integer.MAX_VALUE;
+		int xmax = Integer.MIN_VALUE;
+		int ymin = Integer.MAX_VALUE;
+		int ymax = Integer.MIN_VALUE;
+		for (int i = 0; i < this.count; i++) {
+			xmin = Math.min(xmin, this.start[i]);
+			xmax = Math.max(xmax, this.end[i]);
+			ymin = Math.min(ymin, this.y[i]);
+			ymax = Math.max(ymax, this.y[i] + 1);
+		}
+		return new Rectangle(xmin, ymin, xmax - xmin, ymax - ymin);
+	}
+
+	public void fill(byte[] pixels, int nx, int value) {
+		byte v = (byte) value;
+		for (int i = 0; i < this.count; i++) {
+			int offset = this.y[i] * nx;
+			Arrays.fill(pixels, offset + this.start[i], offset + this.end[i], v);
+		}
+	}
+}